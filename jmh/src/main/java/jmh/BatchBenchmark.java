@@ -0,0 +1,74 @@
+package jmh;
+
+import cli.BatchCompiler;
+import cli.Resources;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * BatchCompiler.run on a generated directory of ESTree json modules (no frontend), sequential and on 2 and 4 threads :
+ * the time of one run over every file.
+ */
+@BenchmarkMode(Mode.AverageTime)
+public class BatchBenchmark extends Settings
+{
+    final private static int FILES = 200;
+
+    @State(Scope.Benchmark)
+    public static class Directory
+    {
+        @Param({ "1", "2", "4" })
+        public int threads;
+
+        Path input;
+        Path output;
+        List<BatchCompiler.Source> sources;
+        BatchCompiler compiler;
+
+        @Setup
+        public void generate() throws IOException
+        {
+            Charset charset = Charset.forName(Resources.DEFAULT_CHAR_SET);
+            input = Files.createTempDirectory("batch-in");
+            output = Files.createTempDirectory("batch-out");
+            for(int i = 0; i < FILES; i++)
+            {
+                Path file = input.resolve("dir" + (i % 10)).resolve("module" + i + ".json");
+                Files.createDirectories(file.getParent());
+                Files.write(file, Inputs.json(Inputs.module(5 + i % 20)).getBytes(charset));
+            }
+
+            sources = BatchCompiler.collect(Collections.singletonList(input.toString()), true);
+            compiler = new BatchCompiler(output);
+        }
+
+        @TearDown
+        public void delete() throws IOException
+        {
+            for(Path dir : new Path[]{ input, output })
+                try(Stream<Path> files = Files.walk(dir)) {
+                    files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+                }
+        }
+    }
+
+    @Benchmark
+    public List<BatchCompiler.Result> run(Directory d) {
+        return d.compiler.run(d.sources, d.threads);
+    }
+}
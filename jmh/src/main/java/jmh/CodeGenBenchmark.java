@@ -0,0 +1,60 @@
+package jmh;
+
+import codegeneration.CodeGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import parser.Parser;
+import semantic.TypeInference;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.Writer;
+
+/**
+ * CodeGenerator.run, generateTo a writer that drops the characters (what the generator allocates without the
+ * program string), printHIR and printSymbolTable on the typed HIR of the fixture. None of them changes the HIR,
+ * so it is built once per trial.
+ */
+public class CodeGenBenchmark extends Settings
+{
+    @State(Scope.Benchmark)
+    public static class Typed
+    {
+        Parser parser;
+        CodeGenerator printer;
+
+        @Setup
+        public void analyze(Fixture f)
+        {
+            parser = new Parser(new StringReader(f.json));
+            parser.run();
+            new TypeInference(parser.getTables(), parser.getHir()).run();
+            printer = new CodeGenerator(parser.getHir(), parser.getTables());
+        }
+    }
+
+    @Benchmark
+    public String run(Typed t)
+    {
+        CodeGenerator cg = new CodeGenerator(t.parser.getHir(), t.parser.getTables());
+        cg.run();
+        return cg.getCode();
+    }
+
+    @Benchmark
+    public void generateTo(Typed t) throws IOException {
+        new CodeGenerator(t.parser.getHir(), t.parser.getTables()).generateTo(Writer.nullWriter());
+    }
+
+    @Benchmark
+    public String printHIR(Typed t) {
+        return t.printer.printHIR(t.parser.getHir(), "");
+    }
+
+    @Benchmark
+    public String printSymbolTable(Typed t) {
+        return t.printer.printSymbolTable(t.parser.getTables());
+    }
+}
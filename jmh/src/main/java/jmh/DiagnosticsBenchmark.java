@@ -0,0 +1,53 @@
+package jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import parser.Parser;
+import semantic.Diagnostics;
+import semantic.TypeInference;
+
+import java.io.StringReader;
+
+/**
+ * Parser and TypeInference of modules where every function has errors : unknown names (Inputs.names, found by the
+ * Parser) or wrong types (Inputs.types, found by the TypeInference). Every error is reported in the same run, so the
+ * time per function should stay flat. Add -jvmArgs -Djs2java.diagnostics.stacktrace=true to compare with the stack
+ * traces captured.
+ */
+public class DiagnosticsBenchmark extends Settings
+{
+    @State(Scope.Benchmark)
+    public static class Module
+    {
+        @Param({ "names", "types" })
+        public String errors;
+
+        @Param({ "100", "1600" })
+        public int functions;
+
+        String json;
+
+        @Setup
+        public void generate() {
+            json = Inputs.json(errors.equals("names") ? Inputs.names(functions) : Inputs.types(functions));
+        }
+    }
+
+    /**
+     * Diagnostics of the Parser, or of the TypeInference when the Parser found none.
+     */
+    @Benchmark
+    public Diagnostics analyze(Module m)
+    {
+        Parser p = new Parser(new StringReader(m.json));
+        p.run();
+        if(!p.getDiagnostics().isEmpty())
+            return p.getDiagnostics();
+        TypeInference ti = new TypeInference(p.getTables(), p.getHir());
+        ti.run();
+        return ti.getDiagnostics();
+    }
+}
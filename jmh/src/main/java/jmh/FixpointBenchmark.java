@@ -0,0 +1,54 @@
+package jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import parser.Parser;
+import semantic.TypeInference;
+
+import java.io.StringReader;
+
+/**
+ * TypeInference on Inputs.chain, the worst order for one pass : the solver revisits every function once, so the
+ * time per function should stay flat as the chain grows.
+ */
+public class FixpointBenchmark extends Settings
+{
+    @State(Scope.Benchmark)
+    public static class Chain
+    {
+        @Param({ "100", "400", "1600" })
+        public int functions;
+
+        String json;
+
+        @Setup
+        public void generate() {
+            json = Inputs.json(Inputs.chain(functions));
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Parsed
+    {
+        Parser parser;
+
+        @Setup(Level.Invocation)
+        public void parse(Chain c)
+        {
+            parser = new Parser(new StringReader(c.json));
+            parser.run();
+        }
+    }
+
+    @Benchmark
+    public TypeInference run(Parsed p)
+    {
+        TypeInference ti = new TypeInference(p.parser.getTables(), p.parser.getHir());
+        ti.run();
+        return ti;
+    }
+}
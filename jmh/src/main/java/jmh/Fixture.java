@@ -0,0 +1,59 @@
+package jmh;
+
+import cli.Resources;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * ESTree json of a checked-in fixture (resources/fixtures), so no frontend runs during the benchmarks.
+ *   small   5 functions pairs,    ~18 KB
+ *   medium  100 functions pairs,  ~370 KB
+ *   huge    1000 functions pairs, ~3.7 MB
+ */
+@State(Scope.Benchmark)
+public class Fixture
+{
+    final private static Charset CHARSET = Charset.forName(Resources.DEFAULT_CHAR_SET);
+    final private static String[] NAMES = { "small", "medium", "huge" };
+    final private static int[] FUNCTIONS = { 5, 100, 1000 };
+
+    @Param({ "small", "medium", "huge" })
+    public String fixture;
+
+    public String json;
+
+    @Setup
+    public void load() throws IOException {
+        json = load(fixture);
+    }
+
+    public static String load(String name) throws IOException
+    {
+        try(InputStream in = Fixture.class.getResourceAsStream("/fixtures/" + name + ".json")) {
+            if(in == null)
+                throw new IOException("No such fixture : " + name);
+            return new String(in.readAllBytes(), CHARSET);
+        }
+    }
+
+    /**
+     * Writes the fixtures again (Inputs modules through RhinoFrontend) in the given directory,
+     * by default src/main/resources/fixtures.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        Path dir = Paths.get(args.length > 0 ? args[0] : "src/main/resources/fixtures");
+        Files.createDirectories(dir);
+        for(int i = 0; i < NAMES.length; i++)
+            Files.write(dir.resolve(NAMES[i] + ".json"), Inputs.json(Inputs.module(FUNCTIONS[i])).getBytes(CHARSET));
+    }
+}
@@ -0,0 +1,93 @@
+package jmh;
+
+import codegeneration.CodeGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import parser.CompactHir;
+import parser.Node;
+import parser.Parser;
+import semantic.TypeInference;
+
+import java.io.StringReader;
+import java.util.List;
+
+/**
+ * Object HIR (one parser.Node per node) against CompactHir on the typed fixture : a full traversal through the Node
+ * API (and the index API of CompactHir) and CodeGenerator on each. Run with -prof gc for the allocation.
+ */
+public class HirBenchmark extends Settings
+{
+    @State(Scope.Benchmark)
+    public static class Typed
+    {
+        @Param({ "object", "compact" })
+        public String hir;
+
+        Parser parser;
+        Node root;
+        CompactHir compact;
+
+        @Setup
+        public void analyze(Fixture f)
+        {
+            parser = new Parser(new StringReader(f.json));
+            parser.run();
+            new TypeInference(parser.getTables(), parser.getHir()).run();
+            root = parser.getHir();
+            if(hir.equals("compact")) {
+                compact = CompactHir.of(root);
+                root = compact.getRoot();
+            }
+        }
+    }
+
+    @Benchmark
+    public long walk(Typed t) {
+        return walk(t.root);
+    }
+
+    /**
+     * Index API of CompactHir, without the Node views ; same as walk for the object HIR.
+     */
+    @Benchmark
+    public long walkIndex(Typed t) {
+        return t.compact == null ? walk(t.root) : walk(t.compact, 0);
+    }
+
+    @Benchmark
+    public String generate(Typed t)
+    {
+        CodeGenerator cg = new CodeGenerator(t.root, t.parser.getTables());
+        cg.run();
+        return cg.getCode();
+    }
+
+    /**
+     * Reads every node like the compiler stages do : kind, specification, descriptor type and children.
+     */
+    private static long walk(Node node)
+    {
+        long n = node.getType().ordinal() + (node.getSpecification() == null ? 0 : 1);
+        if(node.getReference() != null)
+            n += node.getDescriptorType().ordinal();
+
+        List<Node> adj = node.getAdj();
+        for(int i = 0; i < adj.size(); i++)
+            n += walk(adj.get(i));
+        return n;
+    }
+
+    private static long walk(CompactHir hir, int node)
+    {
+        long n = hir.getType(node).ordinal() + (hir.getSpecification(node) == null ? 0 : 1);
+        if(hir.hasReference(node))
+            n += hir.getDescriptorType(node).ordinal();
+
+        for(int i = 0; i < hir.getChildCount(node); i++)
+            n += walk(hir, hir.getChild(node, i));
+        return n;
+    }
+}
@@ -0,0 +1,54 @@
+package jmh;
+
+import cli.BatchCompiler;
+import cli.IncrementalCompiler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Edit-compile latency : a module where one function changes between two compilations, converted in full and by
+ * an IncrementalCompiler that keeps the other functions. Every invocation alternates between the two versions.
+ */
+public class IncrementalBenchmark extends Settings
+{
+    @State(Scope.Thread)
+    public static class Versions
+    {
+        @Param({ "200", "800", "3200" })
+        public int functions;
+
+        String[] json;
+        IncrementalCompiler compiler;
+        int next;
+
+        @Setup
+        public void generate()
+        {
+            String module = Inputs.module(functions);
+            String edited = module.replace("function f" + functions / 2 + "(a, b){\n    var x = 1;",
+                                           "function f" + functions / 2 + "(a, b){\n    var x = 3;");
+            json = new String[]{ Inputs.json(module), Inputs.json(edited) };
+
+            compiler = new IncrementalCompiler();
+            compiler.compile(json[0], true, new BatchCompiler.Result(null));
+            next = 1;
+        }
+
+        String next() {
+            return json[next++ % 2];
+        }
+    }
+
+    @Benchmark
+    public IncrementalCompiler.Compilation full(Versions v) {
+        return new IncrementalCompiler().compile(v.next(), true, new BatchCompiler.Result(null));
+    }
+
+    @Benchmark
+    public IncrementalCompiler.Compilation incremental(Versions v) {
+        return v.compiler.compile(v.next(), true, new BatchCompiler.Result(null));
+    }
+}
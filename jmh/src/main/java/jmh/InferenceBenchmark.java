@@ -0,0 +1,49 @@
+package jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import parser.Parser;
+import semantic.TypeInference;
+
+import java.io.StringReader;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * TypeInference.run, and run(ForkJoinPool) on the common pool (the small fixture is under js2java.inference.parallel.min
+ * functions, so it stays sequential there). Inference changes the HIR, so every invocation gets a new parse, out of the measured time
+ * (the per-invocation setup adds some noise on the small fixture).
+ */
+public class InferenceBenchmark extends Settings
+{
+    @State(Scope.Thread)
+    public static class Parsed
+    {
+        Parser parser;
+
+        @Setup(Level.Invocation)
+        public void parse(Fixture f)
+        {
+            parser = new Parser(new StringReader(f.json));
+            parser.run();
+        }
+    }
+
+    @Benchmark
+    public TypeInference run(Parsed p)
+    {
+        TypeInference ti = new TypeInference(p.parser.getTables(), p.parser.getHir());
+        ti.run();
+        return ti;
+    }
+
+    @Benchmark
+    public TypeInference parallel(Parsed p)
+    {
+        TypeInference ti = new TypeInference(p.parser.getTables(), p.parser.getHir());
+        ti.run(ForkJoinPool.commonPool());
+        return ti;
+    }
+}
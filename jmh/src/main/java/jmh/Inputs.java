@@ -0,0 +1,141 @@
+package jmh;
+
+import cli.RhinoFrontend;
+import semantic.Exceptions;
+
+import java.io.IOException;
+
+/**
+ * Generated javascript modules used by the benchmarks and the fixtures, converted to ESTree json in-process
+ * (no crawler) during the setup.
+ */
+public class Inputs
+{
+    /**
+     * Module with a caller per function and functions with locals, arrays, conditions and loops.
+     * Valid for the whole pipeline.
+     * @param functions number of functions
+     */
+    public static String module(int functions)
+    {
+        StringBuilder js = new StringBuilder();
+
+        for(int f = 0; f < functions; f++)
+        {
+            js.append("function caller").append(f).append("(){\n")
+              .append("    f").append(f).append("(").append(f).append(", 2.5);\n")
+              .append("}\n");
+
+            js.append("function f").append(f).append("(a, b){\n")
+              .append("    var x = 1;\n")
+              .append("    var y = 2.5;\n")
+              .append("    var s = \"text\";\n")
+              .append("    var arr = [1, 2, 3];\n")
+              .append("    var z = x * y + arr[1];\n")
+              .append("    if(x > 0 && z < 10) {\n")
+              .append("        x = x + 1;\n")
+              .append("    }\n")
+              .append("    while(x < 10) {\n")
+              .append("        x++;\n")
+              .append("    }\n")
+              .append("    for(var i = 0; i < 3; i++) {\n")
+              .append("        z = z - i;\n")
+              .append("    }\n")
+              .append("}\n");
+        }
+        return js.toString();
+    }
+
+    /**
+     * main -> f0(1) -> f1(a) -> ... -> fn-1(a), whose return is the only literal type of the module : the worst
+     * order for one pass of the inference, every return type and param is only known after the function it comes from.
+     */
+    public static String chain(int functions)
+    {
+        StringBuilder js = new StringBuilder("function main(){\n    var r = f0(1);\n    return r;\n}\n");
+
+        for(int f = 0; f < functions - 1; f++)
+            js.append("function f").append(f).append("(a){\n")
+              .append("    var r = f").append(f + 1).append("(a);\n")
+              .append("    return r;\n")
+              .append("}\n");
+
+        js.append("function f").append(functions - 1).append("(a){\n")
+          .append("    var r = a + 1;\n")
+          .append("    return r;\n")
+          .append("}\n");
+        return js.toString();
+    }
+
+    /**
+     * Functions that read three undeclared variables each : errors found by the Parser.
+     */
+    public static String names(int functions)
+    {
+        StringBuilder js = new StringBuilder();
+        for(int f = 0; f < functions; f++)
+            js.append("function f").append(f).append("(){\n")
+              .append("    var a = u").append(f).append(";\n")
+              .append("    var b = a + v;\n")
+              .append("    return w;\n")
+              .append("}\n");
+        js.append("function main(){\n    var r = 1;\n}\n");
+        return js.toString();
+    }
+
+    /**
+     * Functions with a type mismatch, an invalid operation and a call with the wrong number of args each : errors
+     * found by the TypeInference.
+     */
+    public static String types(int functions)
+    {
+        StringBuilder js = new StringBuilder();
+        for(int f = 0; f < functions; f++)
+            js.append("function f").append(f).append("(){\n")
+              .append("    var a = 1;\n")
+              .append("    a = \"s\";\n")
+              .append("    var b = true;\n")
+              .append("    var c = b - 1;\n")
+              .append("    a = f").append(f).append("(2);\n")
+              .append("    return a;\n")
+              .append("}\n");
+        js.append("function main(){\n    var r = 1;\n}\n");
+        return js.toString();
+    }
+
+    /**
+     * ESTree json of one function whose body is an expression nested depth times : ((((1 + 1) + 1) + 1) ...).
+     * Written directly, as the javascript parsers refuse sources this deep on small stacks.
+     */
+    public static String nestedJson(int depth)
+    {
+        String literal = "{\"type\":\"Literal\",\"value\":1,\"raw\":\"1\"}";
+
+        StringBuilder json = new StringBuilder();
+        json.append("{\"type\":\"Program\",\"body\":[{\"type\":\"FunctionDeclaration\",")
+            .append("\"id\":{\"type\":\"Identifier\",\"name\":\"main\"},\"params\":[],")
+            .append("\"body\":{\"type\":\"BlockStatement\",\"body\":[{\"type\":\"VariableDeclaration\",")
+            .append("\"declarations\":[{\"type\":\"VariableDeclarator\",\"id\":{\"type\":\"Identifier\",\"name\":\"x\"},")
+            .append("\"init\":");
+
+        for(int i = 0; i < depth; i++)
+            json.append("{\"type\":\"BinaryExpression\",\"operator\":\"+\",\"left\":");
+        json.append(literal);
+        for(int i = 0; i < depth; i++)
+            json.append(",\"right\":").append(literal).append('}');
+
+        json.append("}],\"kind\":\"var\"}]},\"generator\":false,\"expression\":false,\"async\":false}],")
+            .append("\"sourceType\":\"script\"}");
+        return json.toString();
+    }
+
+    public static String json(String jsCode)
+    {
+        try {
+            return new RhinoFrontend().parse(jsCode);
+        }
+        catch (Exceptions.SyntaxException | IOException e) {
+            throw new IllegalStateException(e.getMessage());
+        }
+    }
+}
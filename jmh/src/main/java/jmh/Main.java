@@ -0,0 +1,31 @@
+package jmh;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Main of benchmarks.jar : the JMH command line (benchmark regexps, -p fixture=..., -rf json, ...) with the gc
+ * profiler always on, so every result has its allocation rate (gc.alloc.rate.norm, in bytes per operation).
+ */
+public class Main
+{
+    public static void main(String[] args) throws Exception
+    {
+        CommandLineOptions cmd = new CommandLineOptions(args);
+        if(cmd.shouldHelp() || cmd.shouldList() || cmd.shouldListProfilers() || cmd.shouldListResultFormats()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(cmd);
+        if(cmd.getProfilers().stream().noneMatch(p -> p.getKlass().equals(GCProfiler.class.getName())))
+            options.addProfiler(GCProfiler.class);
+        //only this module's benchmarks by default
+        if(cmd.getIncludes().isEmpty())
+            options.include("jmh\\..*");
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,88 @@
+package jmh;
+
+import codegeneration.CodeGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import parser.Parser;
+import semantic.TypeInference;
+
+import java.io.StringReader;
+
+/**
+ * Parser, TypeInference and CodeGenerator on one expression nested depth times (Inputs.nestedJson). The time per
+ * level should stay flat. The fork runs with a 256 KB stack : no pass recurses once per level, so the depth is
+ * only limited by the heap.
+ */
+@Fork(value = 1, jvmArgsAppend = "-Xss256k")
+public class NestingBenchmark extends Settings
+{
+    @State(Scope.Benchmark)
+    public static class Nested
+    {
+        @Param({ "100", "1600", "25600" })
+        public int depth;
+
+        String json;
+
+        @Setup
+        public void generate() {
+            json = Inputs.nestedJson(depth);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Parsed
+    {
+        Parser parser;
+
+        @Setup(Level.Invocation)
+        public void parse(Nested n)
+        {
+            parser = new Parser(new StringReader(n.json));
+            parser.run();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Typed
+    {
+        Parser parser;
+
+        @Setup
+        public void analyze(Nested n)
+        {
+            parser = new Parser(new StringReader(n.json));
+            parser.run();
+            new TypeInference(parser.getTables(), parser.getHir()).run();
+        }
+    }
+
+    @Benchmark
+    public Parser parse(Nested n)
+    {
+        Parser p = new Parser(n.json);
+        p.run();
+        return p;
+    }
+
+    @Benchmark
+    public TypeInference infer(Parsed p)
+    {
+        TypeInference ti = new TypeInference(p.parser.getTables(), p.parser.getHir());
+        ti.run();
+        return ti;
+    }
+
+    @Benchmark
+    public String generate(Typed t)
+    {
+        CodeGenerator cg = new CodeGenerator(t.parser.getHir(), t.parser.getTables());
+        cg.run();
+        return cg.getCode();
+    }
+}
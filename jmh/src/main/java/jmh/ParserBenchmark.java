@@ -0,0 +1,28 @@
+package jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import parser.Parser;
+
+import java.io.StringReader;
+
+/**
+ * Parser.analyzeBody : HIR and Symbol Tables from the json tree, and streamed from the json text.
+ */
+public class ParserBenchmark extends Settings
+{
+    @Benchmark
+    public Parser tree(Fixture f)
+    {
+        Parser p = new Parser(f.json);
+        p.run();
+        return p;
+    }
+
+    @Benchmark
+    public Parser stream(Fixture f)
+    {
+        Parser p = new Parser(new StringReader(f.json));
+        p.run();
+        return p;
+    }
+}
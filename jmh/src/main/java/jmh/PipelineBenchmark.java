@@ -0,0 +1,26 @@
+package jmh;
+
+import cli.BatchCompiler;
+import codegeneration.CodeGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import parser.Parser;
+
+/**
+ * The whole offline conversion of the fixture, as the CLI does for a .json input : Parser, TypeInference and
+ * CodeGenerator (BatchCompiler.analyze with the frontend skipped).
+ */
+public class PipelineBenchmark extends Settings
+{
+    @Benchmark
+    public String convert(Fixture f)
+    {
+        BatchCompiler.Result result = new BatchCompiler.Result(null);
+        Parser p = BatchCompiler.analyze(f.json, true, result);
+        if(p == null)
+            throw new IllegalStateException(result.getErrorMessage());
+
+        CodeGenerator cg = new CodeGenerator(p.getHir(), p.getTables());
+        cg.run();
+        return cg.getCode();
+    }
+}
@@ -0,0 +1,69 @@
+package jmh;
+
+import cli.CompileServer;
+import cli.Resources;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Latency of a conversion of a 20 functions module sent to a warm CompileServer, AstCache off so every request goes
+ * through the frontend. Run with -t 4 for concurrent clients.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@Fork(value = 1, jvmArgsAppend = "-Djs2java.cache=false")
+public class ServerBenchmark extends Settings
+{
+    @State(Scope.Benchmark)
+    public static class Server
+    {
+        CompileServer server;
+        byte[] request;
+
+        @Setup
+        public void start() throws IOException
+        {
+            server = new CompileServer(0, Runtime.getRuntime().availableProcessors());
+            server.start();
+
+            byte[] body = Inputs.module(20).getBytes(Charset.forName(Resources.DEFAULT_CHAR_SET));
+            byte[] head = ("POST /compile HTTP/1.1\r\nHost: 127.0.0.1\r\nContent-Length: " + body.length
+                           + "\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+            request = Arrays.copyOf(head, head.length + body.length);
+            System.arraycopy(body, 0, request, head.length, body.length);
+        }
+
+        @TearDown
+        public void stop() {
+            server.stop();
+        }
+    }
+
+    /**
+     * One request on a new connection, sent in a single write : HttpURLConnection writes the headers and the body
+     * apart, and the delayed ack of the second packet adds ~40 ms that has nothing to do with the server.
+     */
+    @Benchmark
+    public byte[] compile(Server s) throws IOException
+    {
+        try(Socket socket = new Socket("127.0.0.1", s.server.getPort())) {
+            socket.setTcpNoDelay(true);
+            socket.getOutputStream().write(s.request);
+            byte[] response = socket.getInputStream().readAllBytes();
+            if(!new String(response, 0, Math.min(response.length, 12), StandardCharsets.US_ASCII).endsWith("200"))
+                throw new IOException("Unexpected response " + new String(response, 0, Math.min(response.length, 40), StandardCharsets.US_ASCII));
+            return response;
+        }
+    }
+}
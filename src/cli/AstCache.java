@@ -0,0 +1,224 @@
+package cli;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Content addressed cache of ESTree json, keyed by the SHA-256 of the normalized javascript source, the frontend
+ * that parsed it and FORMAT_VERSION : a disk tier written by another frontend or an older one is never read.
+ * First tier is an in-memory LRU bounded by the size of the stored json; second tier (optional) is one file
+ * per entry in a cache directory, so the cache survives between runs.
+ *
+ * System properties :
+ *   js2java.cache        - "false" turns the cache off
+ *   js2java.cache.memory - memory tier limit, in bytes
+ *   js2java.cache.dir    - directory of the disk tier (no disk tier when absent)
+ */
+public class AstCache
+{
+    final public static String CACHE_PROPERTY = "js2java.cache";
+    final public static String MEMORY_PROPERTY = "js2java.cache.memory";
+    final public static String DIR_PROPERTY = "js2java.cache.dir";
+
+    //to change when a frontend writes other json for the same code (fix, new construct) : the old entries are ignored
+    final public static int FORMAT_VERSION = 1;
+
+    final private static long DEFAULT_MEMORY = 64L * 1024 * 1024;
+    final private static Charset CHARSET = Charset.forName(Resources.DEFAULT_CHAR_SET);
+
+    private static AstCache shared = null;
+
+    private final LinkedHashMap<String, String> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private final long maxBytes;
+    private final Path directory;
+    private long bytes = 0;
+
+    private long hits = 0;
+    private long diskHits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    /**
+     * @param maxBytes limit of the memory tier
+     * @param directory disk tier, or null for memory only
+     */
+    public AstCache(long maxBytes, Path directory)
+    {
+        this.maxBytes = maxBytes;
+        this.directory = directory;
+    }
+
+    /**
+     * Cache configured by the system properties, shared by every WebCrawler of the JVM.
+     */
+    public static synchronized AstCache shared()
+    {
+        if(shared == null)
+        {
+            String dir = System.getProperty(DIR_PROPERTY);
+            shared = new AstCache(Long.getLong(MEMORY_PROPERTY, DEFAULT_MEMORY), dir == null ? null : Paths.get(dir));
+        }
+        return shared;
+    }
+
+    public static boolean isEnabled()
+    {
+        return Boolean.parseBoolean(System.getProperty(CACHE_PROPERTY, "true"));
+    }
+
+    /**
+     * Key of some javascript code parsed by frontend (see JsFrontend.getName). Line endings and trailing blanks
+     * don't change the AST, so they are ignored.
+     */
+    public static String key(String frontend, String jsCode)
+    {
+        String normalized = FORMAT_VERSION + "\0" + frontend + "\0"
+                            + jsCode.replace("\r\n", "\n").replace('\r', '\n').trim();
+
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(normalized.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for(byte b : digest)
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            return hex.toString();
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * @return cached json, or null
+     */
+    public String get(String key)
+    {
+        synchronized (this) {
+            String json = memory.get(key);
+            if(json != null) {
+                hits++;
+                return json;
+            }
+        }
+
+        //disk is read outside the lock, so parallel compilations don't wait on each other's IO
+        if(directory != null)
+        {
+            Path file = directory.resolve(key + ".json");
+            if(Files.isRegularFile(file))
+            {
+                try {
+                    String json = new String(Files.readAllBytes(file), CHARSET);
+                    synchronized (this) {
+                        hits++;
+                        diskHits++;
+                        putInMemory(key, json);
+                    }
+                    return json;
+                }
+                catch (IOException e) {
+                    Logger.getLogger("info").info("IOException: " + e.getMessage());
+                }
+            }
+        }
+
+        synchronized (this) {
+            misses++;
+        }
+        return null;
+    }
+
+    public void put(String key, String json)
+    {
+        synchronized (this) {
+            putInMemory(key, json);
+        }
+
+        //temp file + atomic move : concurrent writers of the same key leave one complete file
+        if(directory != null)
+        {
+            try {
+                Files.createDirectories(directory);
+                Path temp = Files.createTempFile(directory, key, ".tmp");
+                Files.write(temp, json.getBytes(CHARSET));
+                Files.move(temp, directory.resolve(key + ".json"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (IOException e) {
+                Logger.getLogger("info").info("IOException: " + e.getMessage());
+            }
+        }
+    }
+
+    public synchronized void clear()
+    {
+        memory.clear();
+        bytes = 0;
+    }
+
+    private void putInMemory(String key, String json)
+    {
+        long size = sizeOf(json);
+        if(size > maxBytes)
+            return;
+
+        String old = memory.put(key, json);
+        if(old != null)
+            bytes -= sizeOf(old);
+        bytes += size;
+
+        Iterator<Map.Entry<String, String>> it = memory.entrySet().iterator();
+        while(bytes > maxBytes && it.hasNext())
+        {
+            Map.Entry<String, String> eldest = it.next();
+            bytes -= sizeOf(eldest.getValue());
+            it.remove();
+            evictions++;
+        }
+    }
+
+    private static long sizeOf(String json)
+    {
+        return 2L * json.length();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getDiskHits() {
+        return diskHits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized int getEntries() {
+        return memory.size();
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return "AST cache : " + hits + " hits (" + diskHits + " from disk), " + misses + " misses, "
+                 + evictions + " evictions, " + memory.size() + " entries in memory";
+    }
+}
@@ -0,0 +1,638 @@
+package cli;
+
+import cli.Metrics.Stage;
+import codegeneration.CodeGenerator;
+import parser.CompactHir;
+import parser.Node;
+import parser.Parser;
+import parser.SymbolTable;
+import semantic.Diagnostic;
+import semantic.Diagnostics;
+import semantic.TypeInference;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+
+/**
+ * Converts many javascript files at once. Every input goes through WebCrawler, Parser, TypeInference and
+ * CodeGenerator (ESTree json inputs skip WebCrawler), and its .java (plus the optional hir / symbol table dumps) is written in outputDir, in the same
+ * relative path it had under its input directory. Two inputs with the same relative path (under different input
+ * directories) would write the same .java : the later one fails.
+ */
+public class BatchCompiler
+{
+    /**
+     * One input file, its path relative to the directory it was found in and whether it is ESTree json.
+     */
+    public static class Source
+    {
+        private final Path file;
+        private final Path relative;
+        private final boolean estree;
+
+        /**
+         * .json files are ESTree, the others javascript.
+         */
+        public Source(Path file, Path relative) {
+            this(file, relative, relative.toString().endsWith(JSON_EXTENSION));
+        }
+
+        public Source(Path file, Path relative, boolean estree) {
+            this.file = file;
+            this.relative = relative;
+            this.estree = estree;
+        }
+
+        public Path getFile() {
+            return file;
+        }
+
+        public Path getRelative() {
+            return relative;
+        }
+
+        public boolean isEstree() {
+            return estree;
+        }
+    }
+
+    public static class Result
+    {
+        private final Source source;
+        private final Metrics metrics;
+        private String errorMessage;
+        private Diagnostics diagnostics = new Diagnostics();
+
+        /**
+         * @param source null for code that doesn't come from a file
+         */
+        public Result(Source source) {
+            this.source = source;
+            this.metrics = new Metrics(source == null ? "-" : source.getFile().toString());
+        }
+
+        public Source getSource() {
+            return source;
+        }
+
+        public Metrics getMetrics() {
+            return metrics;
+        }
+
+        public long getNanos(Stage stage) {
+            return metrics.getNanos(stage);
+        }
+
+        /**
+         * @return null if the file was converted
+         */
+        public String getErrorMessage() {
+            return errorMessage;
+        }
+
+        void setErrorMessage(String errorMessage) {
+            this.errorMessage = errorMessage;
+        }
+
+        /**
+         * @return every error of the Parser or of the TypeInference (the error message is the first one), empty
+         *         for the errors of the other stages
+         */
+        public Diagnostics getDiagnostics() {
+            return diagnostics;
+        }
+
+        /**
+         * The error message (the first diagnostic), then the other diagnostics, each on a line that starts with indent.
+         */
+        public String formatErrors(String indent)
+        {
+            StringBuilder sb = new StringBuilder(errorMessage.trim().replace('\n', ' '));
+            List<Diagnostic> all = diagnostics.getAll();
+            for(int i = 1; i < all.size(); i++)
+                sb.append('\n').append(indent).append(all.get(i));
+            if(diagnostics.getCount() > all.size())
+                sb.append('\n').append(indent).append("... and ").append(diagnostics.getCount() - all.size()).append(" more");
+            return sb.toString();
+        }
+    }
+
+    final private static Charset CHARSET = Charset.forName(Resources.DEFAULT_CHAR_SET);
+    final private static String GLOB_CHARS = "*?[{";
+    final private static String JSON_EXTENSION = ".json";
+    final private static String STDIN_NAME = "stdin";
+
+    private Path outputDir;
+    private boolean dumpHir = false;
+    private boolean dumpSymbolTable = false;
+
+    public BatchCompiler(Path outputDir) {
+        this.outputDir = outputDir;
+    }
+
+    public void setDumpHir(boolean dumpHir) {
+        this.dumpHir = dumpHir;
+    }
+
+    public void setDumpSymbolTable(boolean dumpSymbolTable) {
+        this.dumpSymbolTable = dumpSymbolTable;
+    }
+
+    public static List<Source> collect(List<String> inputs) throws IOException {
+        return collect(inputs, false);
+    }
+
+    /**
+     * Expands files, directories (every .js inside, or every .json with estree) and globs ("snippets/*.js",
+     * "**" for any depth) into a sorted list of sources.
+     * A path that appears twice is only compiled once.
+     * @param estree every input is ESTree json, whatever its extension
+     */
+    public static List<Source> collect(List<String> inputs, boolean estree) throws IOException
+    {
+        TreeMap<Path, Source> sources = new TreeMap<>();
+
+        for(String input : inputs)
+        {
+            int glob = indexOfGlob(input);
+
+            if(glob >= 0)
+            {
+                //base is the last directory before the first glob character
+                int slash = input.lastIndexOf('/', glob);
+                Path base = Paths.get(slash < 0 ? "." : input.substring(0, slash + 1));
+                String pattern = input.substring(slash + 1);
+
+                PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+                //"**/*.js" also matches the files directly in base
+                PathMatcher top = pattern.startsWith("**/") ? FileSystems.getDefault().getPathMatcher("glob:" + pattern.substring(3)) : null;
+
+                walk(base, sources, estree, p -> matcher.matches(p) || (top != null && top.matches(p)));
+            }
+            else
+            {
+                Path path = Paths.get(input);
+                if(Files.isDirectory(path))
+                    walk(path, sources, estree, p -> p.toString().endsWith(estree ? JSON_EXTENSION : ".js"));
+                else if(Files.exists(path))
+                    sources.putIfAbsent(path.toAbsolutePath().normalize(), source(path, path.getFileName(), estree));
+                else
+                    throw new IOException("No such file or directory : " + input);
+            }
+        }
+
+        return new ArrayList<>(sources.values());
+    }
+
+    private static int indexOfGlob(String input)
+    {
+        for(int i = 0; i < input.length(); i++)
+            if(GLOB_CHARS.indexOf(input.charAt(i)) >= 0)
+                return i;
+        return -1;
+    }
+
+    private interface Filter {
+        boolean accept(Path relative);
+    }
+
+    private static void walk(Path base, TreeMap<Path, Source> sources, boolean estree, Filter filter) throws IOException
+    {
+        try(Stream<Path> files = Files.walk(base)) {
+            files.filter(Files::isRegularFile).forEach(file -> {
+                Path relative = base.relativize(file);
+                if(filter.accept(relative))
+                    sources.putIfAbsent(file.toAbsolutePath().normalize(), source(file, relative, estree));
+            });
+        }
+    }
+
+    private static Source source(Path file, Path relative, boolean estree) {
+        return estree ? new Source(file, relative, true) : new Source(file, relative);
+    }
+
+    public List<Result> run(List<Source> sources)
+    {
+        Map<Source, String> duplicates = duplicates(sources);
+        List<Result> results = new ArrayList<>(sources.size());
+        for(Source s : sources)
+            results.add(duplicates.containsKey(s) ? failed(s, duplicates.get(s)) : compile(s));
+        return results;
+    }
+
+    /**
+     * Sources whose .java would be the one of an earlier source, e.g. a/x.js and b/x.js given as the roots a and b :
+     * they fail instead of overwriting it (or writing it at the same time on another thread).
+     * @return the error message of each of them
+     */
+    private Map<Source, String> duplicates(List<Source> sources)
+    {
+        Map<Path, Source> targets = new HashMap<>();
+        Map<Source, String> duplicates = new IdentityHashMap<>();
+        for(Source s : sources)
+        {
+            Source first = targets.putIfAbsent(output(s, ".java").toAbsolutePath().normalize(), s);
+            if(first != null)
+                duplicates.put(s, "Output " + output(s, ".java") + " is already the one of " + first.getFile());
+        }
+        return duplicates;
+    }
+
+    private static Result failed(Source source, String errorMessage)
+    {
+        Result result = new Result(source);
+        result.errorMessage = errorMessage;
+        result.metrics.finish(true);
+        return result;
+    }
+
+    /**
+     * Converts the sources on a work-stealing pool of the given number of threads. Each file has its own
+     * Parser/TypeInference/CodeGenerator, so the only shared state is the frontend (AstCache, DriverPool), which
+     * is thread safe. At most 2 * threads files are in flight, so memory doesn't grow with the number of inputs,
+     * and the results come back in the order of sources.
+     */
+    public List<Result> run(List<Source> sources, int threads)
+    {
+        if(threads <= 1)
+            return run(sources);
+
+        Map<Source, String> duplicates = duplicates(sources);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        Semaphore inFlight = new Semaphore(2 * threads);
+        List<ForkJoinTask<Result>> tasks = new ArrayList<>(sources.size());
+
+        try {
+            for(Source s : sources)
+            {
+                if(duplicates.containsKey(s)) {
+                    tasks.add(pool.submit(() -> failed(s, duplicates.get(s))));
+                    continue;
+                }
+                inFlight.acquireUninterruptibly();
+                tasks.add(pool.submit(() -> {
+                    try {
+                        return compile(s);
+                    }
+                    finally {
+                        inFlight.release();
+                    }
+                }));
+            }
+
+            List<Result> results = new ArrayList<>(sources.size());
+            for(ForkJoinTask<Result> t : tasks)
+                results.add(t.join());
+            return results;
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Converts one file. Errors are kept in the result, they never stop the batch.
+     */
+    public Result compile(Source source)
+    {
+        Result result = new Result(source);
+
+        try {
+            String code = Parser.read(source.getFile());
+            result.metrics.lap(Stage.READ);
+
+            Parser p = analyze(code, source.isEstree(), result);
+            if(p != null)
+            {
+                CodeGenerator cg = new CodeGenerator(p.getHir(), p.getTables());
+                Path java = output(source, ".java");
+                Files.createDirectories(java.getParent());
+                cg.generateTo(java);
+                dump(cg, p.getHir(), p.getTables(), source);
+                result.metrics.setOutputSize(cg.getLength());
+                result.metrics.lap(Stage.GENERATION);
+            }
+        }
+        catch (IOException | RuntimeException | StackOverflowError e) {
+            result.errorMessage = errorMessage(e);
+        }
+
+        result.metrics.finish(result.errorMessage != null);
+        return result;
+    }
+
+    /**
+     * Converts the code read from in (stdin) : the .java goes to out and the optional dumps to outputDir, as stdin.*.
+     * @param estree in is ESTree json instead of javascript
+     */
+    public Result compile(InputStream in, boolean estree, Writer out)
+    {
+        Source source = new Source(Paths.get("-"), Paths.get(STDIN_NAME), estree);
+        Result result = new Result(source);
+
+        try {
+            String code = new String(in.readAllBytes(), CHARSET);
+            result.metrics.lap(Stage.READ);
+
+            Parser p = analyze(code, estree, result);
+            if(p != null)
+            {
+                CodeGenerator cg = new CodeGenerator(p.getHir(), p.getTables());
+                cg.generateTo(out);
+                out.flush();
+                if(dumpHir || dumpSymbolTable)
+                    Files.createDirectories(outputDir);
+                dump(cg, p.getHir(), p.getTables(), source);
+                result.metrics.setOutputSize(cg.getLength());
+                result.metrics.lap(Stage.GENERATION);
+            }
+        }
+        catch (IOException | RuntimeException | StackOverflowError e) {
+            result.errorMessage = errorMessage(e);
+        }
+
+        result.metrics.finish(result.errorMessage != null);
+        return result;
+    }
+
+    /**
+     * Converts the sources, then again each one that changes on disk, until the thread is interrupted. Every source
+     * keeps an IncrementalCompiler, so an edit only converts again the functions it changed and the ones that depend
+     * on them. Prints a line per conversion.
+     */
+    public void watch(List<Source> sources, PrintStream out) throws IOException
+    {
+        Map<Path, Source> watched = new HashMap<>();
+        Map<Path, IncrementalCompiler> compilers = new HashMap<>();
+        Set<Path> dirs = new HashSet<>();
+
+        try(WatchService watcher = FileSystems.getDefault().newWatchService())
+        {
+            Map<Source, String> duplicates = duplicates(sources);
+            for(Source s : sources)
+            {
+                if(duplicates.containsKey(s)) {
+                    out.println(s.getFile() + " : failed : " + duplicates.get(s));
+                    continue;
+                }
+                Path file = s.getFile().toAbsolutePath().normalize();
+                if(dirs.add(file.getParent()))
+                    file.getParent().register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+                watched.put(file, s);
+                compilers.put(file, new IncrementalCompiler());
+                compile(s, compilers.get(file), out);
+            }
+
+            while(true)
+            {
+                WatchKey key;
+                try {
+                    key = watcher.take();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+
+                //a save is often several events for the same file
+                Path dir = (Path) key.watchable();
+                Set<Path> changed = new LinkedHashSet<>();
+                for(WatchEvent<?> e : key.pollEvents())
+                {
+                    if(e.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        for(Path file : watched.keySet())
+                            if(file.getParent().equals(dir))
+                                changed.add(file);
+                    }
+                    else
+                        changed.add(dir.resolve((Path) e.context()));
+                }
+                key.reset();
+
+                for(Path file : changed)
+                    if(watched.containsKey(file))
+                        compile(watched.get(file), compilers.get(file), out);
+            }
+        }
+    }
+
+    /**
+     * Converts one file with compiler, which keeps what it can of the last version of the file, and prints
+     * "file : converted compiled/all units in ms" or the error.
+     */
+    private Result compile(Source source, IncrementalCompiler compiler, PrintStream out)
+    {
+        Result result = new Result(source);
+        IncrementalCompiler.Compilation c = null;
+
+        try {
+            String code = Parser.read(source.getFile());
+            result.metrics.lap(Stage.READ);
+
+            c = compiler.compile(code, source.isEstree(), result);
+            if(c != null)
+            {
+                Path java = output(source, ".java");
+                Files.createDirectories(java.getParent());
+                Files.write(java, c.getCode().getBytes(CHARSET));
+                dump(new CodeGenerator(c.getHir(), c.getTables()), c.getHir(), c.getTables(), source);
+                result.metrics.lap(Stage.GENERATION);
+            }
+        }
+        catch (IOException | RuntimeException | StackOverflowError e) {
+            result.errorMessage = errorMessage(e);
+            compiler.clear();
+        }
+
+        result.metrics.finish(result.errorMessage != null);
+
+        long nanos = 0;
+        for(Stage s : Stage.values())
+            nanos += result.getNanos(s);
+        if(result.errorMessage != null)
+            out.println(String.format("%s : failed in %.1f ms : %s", source.getFile(), nanos / 1e6,
+                                      result.formatErrors("  ")));
+        else
+            out.println(String.format("%s : converted %d/%d units in %.1f ms", source.getFile(), c.getCompiled(),
+                                      c.getCompiled() + c.getReused(), nanos / 1e6));
+        return result;
+    }
+
+    private void dump(CodeGenerator cg, Node hir, ArrayList<SymbolTable> tables, Source source) throws IOException
+    {
+        if(dumpHir)
+            Files.write(output(source, ".hir.txt"), cg.printHIR(hir, "").getBytes(CHARSET));
+        if(dumpSymbolTable)
+            Files.write(output(source, ".symbolTable.txt"), cg.printSymbolTable(tables).getBytes(CHARSET));
+    }
+
+    /**
+     * Frontend (skipped for ESTree json), Parser and TypeInference of code in memory, measured in the metrics of
+     * result (finishing them is up to the caller, after the code generation).
+     * @param estree code is ESTree json instead of javascript
+     * @return the parser, with the typed HIR and the Symbol Tables ; null if some stage failed (error in result)
+     */
+    public static Parser analyze(String code, boolean estree, Result result)
+    {
+        try {
+            String jsonCode = estree ? code : frontend(code, result);
+            if(jsonCode == null)
+                return null;
+
+            Parser p = new Parser(jsonCode);
+            result.metrics.lap(Stage.JSON);
+            return analyze(p, result);
+        }
+        catch (CancellationException e) {
+            throw e;
+        }
+        catch (RuntimeException | StackOverflowError e) {
+            result.errorMessage = errorMessage(e);
+            return null;
+        }
+    }
+
+    /**
+     * WebCrawler of javascript code, timed in result.
+     * @return the ESTree json ; null if it failed (error in result)
+     */
+    static String frontend(String code, Result result)
+    {
+        WebCrawler wc = new WebCrawler(code);
+        wc.run();
+        result.metrics.lap(Stage.FRONTEND);
+        if(wc.getErrorMessage() != null) {
+            result.errorMessage = "Syntax error : " + wc.getErrorMessage();
+            return null;
+        }
+        if(wc.getJsonCode().isEmpty()) {
+            result.errorMessage = "Frontend failed";
+            return null;
+        }
+        return wc.getJsonCode();
+    }
+
+    /**
+     * Parser (run here) and TypeInference of a json already read, timed in result.
+     * @return p, with the typed HIR and the Symbol Tables ; null if some stage failed (error in result)
+     */
+    static Parser analyze(Parser p, Result result)
+    {
+        Metrics metrics = result.metrics;
+        try {
+            p.run();
+            if(CompactHir.isEnabled())
+                p.setHir(CompactHir.of(p.getHir()).getRoot());
+            metrics.lap(Stage.PARSER);
+            if(p.isTruncated()) {
+                result.diagnostics = p.getDiagnostics();
+                result.errorMessage = "Semantic error : " + p.getDiagnostics().getFirst();
+                return null;
+            }
+            metrics.countHir(p.getHir());
+            metrics.countTables(p.getTables());
+            metrics.begin();
+
+            //also after the errors of the Parser, so one run reports every error of the module
+            TypeInference ti = new TypeInference(p.getTables(), p.getHir());
+            ti.run();
+            metrics.lap(Stage.INFERENCE);
+            if(p.getErrorMessage() != null || ti.getErrorMessage() != null) {
+                Diagnostics all = new Diagnostics();
+                all.addAll(p.getDiagnostics());
+                all.addAll(ti.getDiagnostics());
+                result.diagnostics = all;
+                result.errorMessage = "Semantic error : " + all.getFirst();
+                return null;
+            }
+            return p;
+        }
+        catch (CancellationException e) {
+            throw e;
+        }
+        catch (RuntimeException | StackOverflowError e) {
+            result.errorMessage = errorMessage(e);
+            return null;
+        }
+    }
+
+    static String errorMessage(Throwable e) {
+        return e.getClass().getSimpleName() + (e.getMessage() != null ? " : " + e.getMessage() : "");
+    }
+
+    /**
+     * a/b/file.js (or file.json) -> outputDir/a/b/file + extension
+     */
+    private Path output(Source source, String extension)
+    {
+        String name = source.getRelative().toString();
+        if(name.endsWith(".js"))
+            name = name.substring(0, name.length() - 3);
+        else if(name.endsWith(JSON_EXTENSION))
+            name = name.substring(0, name.length() - JSON_EXTENSION.length());
+        return outputDir.resolve(name + extension);
+    }
+
+    /**
+     * Files/sec, failures, time and memory allocated in each stage.
+     */
+    public static void printSummary(List<Result> results, long wallNanos, PrintStream out)
+    {
+        long[] total = new long[Stage.values().length];
+        long[] allocated = new long[Stage.values().length];
+        int failed = 0;
+
+        for(Result r : results)
+        {
+            for(Stage s : Stage.values()) {
+                total[s.ordinal()] += r.getNanos(s);
+                allocated[s.ordinal()] += r.getMetrics().getAllocatedBytes(s);
+            }
+            if(r.getErrorMessage() != null)
+                failed++;
+        }
+
+        double seconds = wallNanos / 1e9;
+        out.println(String.format("files: %d  converted: %d  failed: %d  time: %.2f s  (%.1f files/s)",
+                results.size(), results.size() - failed, failed, seconds, seconds > 0 ? results.size() / seconds : 0));
+
+        out.println(String.format("%-12s %12s %10s %12s", "stage", "total ms", "avg ms", "alloc MB"));
+        for(Stage s : Stage.values())
+            out.println(String.format("%-12s %12.1f %10.3f %12.1f", s.name().toLowerCase(), total[s.ordinal()] / 1e6,
+                    results.isEmpty() ? 0 : total[s.ordinal()] / 1e6 / results.size(), allocated[s.ordinal()] / 1e6));
+
+        if(failed > 0)
+        {
+            out.println("failures:");
+            for(Result r : results)
+                if(r.getErrorMessage() != null)
+                    out.println("  " + r.getSource().getFile() + " : " + r.formatErrors("    "));
+        }
+    }
+}
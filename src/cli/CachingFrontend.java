@@ -0,0 +1,44 @@
+package cli;
+
+import semantic.Exceptions;
+
+import java.io.IOException;
+
+/**
+ * JsFrontend that answers from an AstCache and only calls the real frontend on a miss.
+ * Code with syntax errors is not cached.
+ */
+public class CachingFrontend implements JsFrontend
+{
+    private AstCache cache;
+    private JsFrontend frontend;
+
+    public CachingFrontend(AstCache cache, JsFrontend frontend)
+    {
+        this.cache = cache;
+        this.frontend = frontend;
+    }
+
+    @Override
+    public String parse(String jsCode) throws Exceptions.SyntaxException, IOException
+    {
+        String key = AstCache.key(frontend.getName(), jsCode);
+
+        String json = cache.get(key);
+        if(json == null)
+        {
+            json = frontend.parse(jsCode);
+            cache.put(key, json);
+        }
+        return json;
+    }
+
+    @Override
+    public String getName() {
+        return frontend.getName();
+    }
+
+    public AstCache getCache() {
+        return cache;
+    }
+}
@@ -0,0 +1,230 @@
+package cli;
+
+import codegeneration.CodeGenerator;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import parser.Parser;
+import semantic.Diagnostic;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Conversion daemon : keeps one JVM (classes loaded, code compiled by the JIT, AstCache) for many conversions,
+ * served over HTTP on the loopback interface.
+ *
+ *   POST /compile[?input=estree][&hir=true][&st=true]   body : javascript (or ESTree json)
+ *     200 {"code": ..., "hir": ..., "symbolTable": ..., "nanos": {...}, "allocated": {...}, "nodes": n}
+ *     422 {"error": ..., "nanos": {...}, ...}      syntax or semantic error
+ *         with "diagnostics": [{"kind", "symbol", "function", "path", "message"}, ...] and "errorCount" : every
+ *         semantic error, the first one being "error"
+ *     413 {"error": ...}                           body over js2java.server.maxBody bytes (default 8 MB)
+ *     422 {"error": ...}                           HIR dump over js2java.server.maxHir chars (default 32 M) :
+ *         it grows with the square of the nesting depth, so one deep input could exhaust the heap of the daemon
+ *   GET /health                               200 ok
+ *
+ * Requests are served by a fixed pool of workers, each one converting a request on its own.
+ */
+public class CompileServer
+{
+    final public static int DEFAULT_PORT = 8517;
+    final public static String MAX_BODY_PROPERTY = "js2java.server.maxBody";
+    final public static String MAX_HIR_PROPERTY = "js2java.server.maxHir";
+
+    final private static int MAX_BODY = Integer.getInteger(MAX_BODY_PROPERTY, 8 << 20);
+    final private static long MAX_HIR = Long.getLong(MAX_HIR_PROPERTY, 32L << 20);
+
+    final private static Charset CHARSET = Charset.forName(Resources.DEFAULT_CHAR_SET);
+    final private static String WARMUP_CODE = "function f(a, b) { var c = a + b * 2; return c; }\n"
+                                              + "function g() { var r = f(1, 2); var s = [1, 2, 3]; return r + s[0]; }\n";
+    final private static int WARMUP_RUNS = 20;
+
+    private final HttpServer server;
+    private final ExecutorService workers;
+    private final Gson gson = new GsonBuilder().disableHtmlEscaping().create();
+
+    /**
+     * @param port 0 for any free port
+     * @param threads number of workers
+     */
+    public CompileServer(int port, int threads) throws IOException
+    {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+
+        AtomicInteger count = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(Math.max(threads, 1), task -> {
+            Thread t = new Thread(task, "compile-worker-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+
+        server.setExecutor(workers);
+        server.createContext("/compile", this::compile);
+        server.createContext("/health", exchange -> send(exchange, 200, "text/plain", "ok"));
+    }
+
+    public void start()
+    {
+        //the first requests don't pay the class loading
+        for(int i = 0; i < WARMUP_RUNS; i++)
+            convert(WARMUP_CODE, false, true, true);
+        MetricsRegistry.get().reset();
+
+        server.start();
+        Logger.getLogger("info").info("Compile server on http://" + server.getAddress().getHostString() + ":" + getPort());
+    }
+
+    public void stop()
+    {
+        server.stop(0);
+        workers.shutdown();
+        try {
+            workers.awaitTermination(5, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void compile(HttpExchange exchange) throws IOException
+    {
+        try {
+            if(!exchange.getRequestMethod().equals("POST")) {
+                exchange.getResponseHeaders().set("Allow", "POST");
+                send(exchange, 405, "text/plain", "POST the code to convert");
+                return;
+            }
+
+            Map<String, String> query = query(exchange.getRequestURI().getRawQuery());
+            //never more than MAX_BODY + 1 bytes in memory, whatever Content-Length says
+            byte[] body = exchange.getRequestBody().readNBytes(MAX_BODY + 1);
+            if(body.length > MAX_BODY) {
+                JsonObject response = new JsonObject();
+                response.addProperty("error", "Body larger than " + MAX_BODY + " bytes");
+                send(exchange, 413, "application/json", gson.toJson(response));
+                return;
+            }
+            String code = new String(body, CHARSET);
+
+            JsonObject response = convert(code, "estree".equals(query.get("input")),
+                                          "true".equals(query.get("hir")), "true".equals(query.get("st")));
+            send(exchange, response.has("error") ? 422 : 200, "application/json", gson.toJson(response));
+        }
+        finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * One conversion, as the json of the response.
+     */
+    JsonObject convert(String code, boolean estree, boolean hir, boolean symbolTable)
+    {
+        BatchCompiler.Result result = new BatchCompiler.Result(null);
+        Metrics metrics = result.getMetrics();
+        JsonObject response = new JsonObject();
+
+        Parser p = BatchCompiler.analyze(code, estree, result);
+        if(p != null)
+        {
+            try {
+                CodeGenerator cg = new CodeGenerator(p.getHir(), p.getTables());
+                cg.run();
+                metrics.setOutputSize(cg.getLength());
+                metrics.lap(Metrics.Stage.GENERATION);
+                response.addProperty("code", cg.getCode());
+                if(hir)
+                {
+                    String dump = cg.printHIR(p.getHir(), "", MAX_HIR);
+                    if(dump == null) {
+                        response.remove("code");
+                        response.addProperty("error", "HIR dump larger than " + MAX_HIR + " chars, convert without hir=true");
+                    }
+                    else
+                        response.addProperty("hir", dump);
+                }
+                if(symbolTable && !response.has("error"))
+                    response.addProperty("symbolTable", cg.printSymbolTable(p.getTables()));
+            }
+            catch (RuntimeException | StackOverflowError e) {
+                response.remove("code");
+                response.addProperty("error", e.getClass().getSimpleName() + (e.getMessage() != null ? " : " + e.getMessage() : ""));
+            }
+        }
+        else {
+            response.addProperty("error", result.getErrorMessage());
+            JsonArray diagnostics = new JsonArray();
+            for(Diagnostic d : result.getDiagnostics().getAll())
+            {
+                JsonObject diagnostic = new JsonObject();
+                diagnostic.addProperty("kind", d.getKind().name().toLowerCase());
+                diagnostic.addProperty("symbol", d.getSymbol());
+                diagnostic.addProperty("function", d.getFunction());
+                diagnostic.addProperty("path", d.getPath());
+                diagnostic.addProperty("message", d.getMessage());
+                diagnostics.add(diagnostic);
+            }
+            response.add("diagnostics", diagnostics);
+            response.addProperty("errorCount", result.getDiagnostics().getCount());
+        }
+
+        metrics.finish(response.has("error"));
+
+        JsonObject nanos = new JsonObject();
+        JsonObject allocated = new JsonObject();
+        for(Metrics.Stage s : Metrics.Stage.values())
+            if(s != Metrics.Stage.READ) {
+                nanos.addProperty(s.name().toLowerCase(), metrics.getNanos(s));
+                allocated.addProperty(s.name().toLowerCase(), metrics.getAllocatedBytes(s));
+            }
+        response.add("nanos", nanos);
+        response.add("allocated", allocated);
+        response.addProperty("nodes", metrics.getNodeCount());
+        return response;
+    }
+
+    private static Map<String, String> query(String rawQuery) throws IOException
+    {
+        Map<String, String> params = new HashMap<>();
+        if(rawQuery == null)
+            return params;
+
+        for(String pair : rawQuery.split("&"))
+        {
+            int eq = pair.indexOf('=');
+            String key = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "true" : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(key, Resources.DEFAULT_CHAR_SET), URLDecoder.decode(value, Resources.DEFAULT_CHAR_SET));
+        }
+        return params;
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, String body) throws IOException
+    {
+        byte[] bytes = body.getBytes(CHARSET);
+        exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=" + Resources.DEFAULT_CHAR_SET);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try(OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
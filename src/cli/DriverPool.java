@@ -0,0 +1,166 @@
+package cli;
+
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * Bounded pool of browser sessions with the parser page already loaded.
+ * A session is reused by the next request, checked before every use and recycled (quit and replaced)
+ * after maxUses requests or when it stops answering.
+ */
+public class DriverPool
+{
+    public static class Session
+    {
+        private final WebDriver driver;
+        private int uses;
+
+        private Session(WebDriver driver) {
+            this.driver = driver;
+            this.uses = 0;
+        }
+
+        public WebDriver getDriver() {
+            return driver;
+        }
+
+        public int getUses() {
+            return uses;
+        }
+    }
+
+    private final String website;
+    private final int size;
+    private final int maxUses;
+    private final Supplier<WebDriver> factory;
+
+    private final ConcurrentLinkedDeque<Session> idle = new ConcurrentLinkedDeque<>();
+    private final Semaphore permits;
+    private volatile boolean closed = false;
+
+    /**
+     * @param website page with the parser (window.editor and the 'syntax' element)
+     * @param size maximum number of sessions alive at the same time
+     * @param maxUses requests served by a session before it is recycled
+     * @param factory creates a new browser
+     */
+    public DriverPool(String website, int size, int maxUses, Supplier<WebDriver> factory)
+    {
+        if(size < 1 || maxUses < 1)
+            throw new IllegalArgumentException("Pool size and max uses must be positive");
+
+        this.website = website;
+        this.size = size;
+        this.maxUses = maxUses;
+        this.factory = factory;
+        this.permits = new Semaphore(size, true);
+    }
+
+    /**
+     * Opens every session of the pool, so the first requests don't pay the browser startup.
+     */
+    public void warmUp()
+    {
+        while(idle.size() < size && permits.tryAcquire())
+        {
+            try {
+                idle.offer(newSession());
+            }
+            finally {
+                permits.release();
+            }
+        }
+    }
+
+    /**
+     * Waits for a free healthy session. Must be given back with release.
+     */
+    public Session acquire() throws InterruptedException
+    {
+        if(closed)
+            throw new IllegalStateException("Driver pool is closed");
+
+        permits.acquire();
+        try {
+            Session session;
+            while((session = idle.poll()) != null)
+            {
+                if(isHealthy(session))
+                    return session;
+                quit(session);
+            }
+            return newSession();
+        }
+        catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    public void release(Session session)
+    {
+        session.uses++;
+
+        if(closed || session.uses >= maxUses || !isHealthy(session))
+            quit(session);
+        else
+            idle.offerFirst(session);
+
+        permits.release();
+    }
+
+    public void close()
+    {
+        closed = true;
+        Session session;
+        while((session = idle.poll()) != null)
+            quit(session);
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getIdle() {
+        return idle.size();
+    }
+
+    private Session newSession()
+    {
+        WebDriver driver = factory.get();
+        try {
+            driver.get(website);
+        }
+        catch (WebDriverException e) {
+            driver.quit();
+            throw e;
+        }
+        return new Session(driver);
+    }
+
+    private boolean isHealthy(Session session)
+    {
+        try {
+            Object ready = ((JavascriptExecutor) session.driver).executeScript("return !!window.editor;");
+            return Boolean.TRUE.equals(ready);
+        }
+        catch (WebDriverException e) {
+            return false;
+        }
+    }
+
+    private void quit(Session session)
+    {
+        try {
+            session.driver.quit();
+        }
+        catch (WebDriverException e) {
+            //already dead
+        }
+    }
+}
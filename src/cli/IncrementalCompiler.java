@@ -0,0 +1,748 @@
+package cli;
+
+import cli.Metrics.Stage;
+import cli.Resources.DataType;
+import cli.Resources.JSONType;
+import codegeneration.CodeGenerator;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import parser.Descriptor;
+import parser.FunctionRegistry;
+import parser.Node;
+import parser.Parser;
+import parser.SymbolTable;
+import semantic.TypeInference;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
+import java.util.logging.Logger;
+
+/**
+ * Incremental compilation of one module that is edited over time (GUI, Main --watch).
+ *
+ * The top level of the ESTree Program is split like CallGraph does : a unit per function declaration, with the top
+ * level statements that follow it. Every unit of a module compiled without errors is kept, keyed by a hash of its
+ * ESTree subtree, with its typed HIR nodes, its Symbol Tables, its java code and what its types were inferred from :
+ * the arg types of every call to its functions and the signature of every function it calls.
+ *
+ * The next version of the module parses, infers and generates again only the units with a new hash, plus the kept
+ * units whose inputs changed (other callers or arg types for their functions, another signature for a function they
+ * call, a call cycle with a changed unit), until no more unit changes. Kept units are only read (TypeInference.run(Set)).
+ * The top level statements are cut in the json text, and only the ones with a new text are read into a Gson tree.
+ *
+ * Modules that don't start with a function or that declare a function twice, and every module with an error, go
+ * through a full compilation, so the diagnostics are the ones of BatchCompiler. The CompactHir is not used here.
+ */
+public class IncrementalCompiler
+{
+    /**
+     * Also compiles every module in full and logs when the code differs (then the full code is used).
+     */
+    final public static String VERIFY_PROPERTY = "js2java.incremental.verify";
+
+    final private static String FUNCTION_DECLARATION = "FunctionDeclaration";
+    final private static int DIGEST_CHUNK = 8192;
+
+    /**
+     * Converted module : code, typed HIR and Symbol Tables, and how many units were kept or compiled again.
+     */
+    public static class Compilation
+    {
+        private final String code;
+        private final Node hir;
+        private final ArrayList<SymbolTable> tables;
+        private final int reused;
+        private final int compiled;
+
+        Compilation(String code, Node hir, ArrayList<SymbolTable> tables, int reused, int compiled) {
+            this.code = code;
+            this.hir = hir;
+            this.tables = tables;
+            this.reused = reused;
+            this.compiled = compiled;
+        }
+
+        public String getCode() {
+            return code;
+        }
+
+        public Node getHir() {
+            return hir;
+        }
+
+        public ArrayList<SymbolTable> getTables() {
+            return tables;
+        }
+
+        /**
+         * @return units taken from the previous compilations
+         */
+        public int getReused() {
+            return reused;
+        }
+
+        /**
+         * @return units parsed, inferred and generated again (all of them after a full compilation)
+         */
+        public int getCompiled() {
+            return compiled;
+        }
+    }
+
+    /**
+     * Compiled unit, and the inputs it was inferred with.
+     */
+    private static class Artifact
+    {
+        final List<Node> nodes;
+        final List<SymbolTable> tables;
+        final List<Node> calls;
+        //function of the unit -> hashes of the units that call it
+        final Map<String, Set<String>> callers;
+        //function of the unit -> hash of the calling unit and arg types, of every call to it
+        final Map<String, Set<String>> incoming;
+        //function called by the unit -> its signature
+        final Map<String, String> callees;
+        final String code;
+
+        Artifact(Unit u, Map<String, Set<String>> callers, Map<String, Set<String>> incoming, Map<String, String> callees,
+                 String code) {
+            this.nodes = u.nodes;
+            this.tables = u.tables;
+            this.calls = u.calls;
+            this.callers = callers;
+            this.incoming = incoming;
+            this.callees = callees;
+            this.code = code;
+        }
+    }
+
+    /**
+     * Statement of the top level of an earlier module, by its json text.
+     */
+    private static class Element
+    {
+        //hash of its ESTree subtree
+        final String hash;
+        final boolean function;
+
+        Element(String hash, boolean function) {
+            this.hash = hash;
+            this.function = function;
+        }
+    }
+
+    private static class Unit
+    {
+        final List<String> texts = new ArrayList<>();
+        final List<Element> elements = new ArrayList<>();
+        String hash;
+        //kept from an earlier compilation, null while the unit is compiled again
+        Artifact artifact;
+        //null until the unit is parsed (or taken from its artifact)
+        List<Node> nodes;
+        List<SymbolTable> tables;
+        List<Node> calls;
+    }
+
+    private HashMap<String, Artifact> artifacts = new HashMap<>();
+    //the statements of the last module compiled incrementally : their text isn't read as json again
+    private HashMap<String, Element> elements = new HashMap<>();
+
+    /**
+     * Converts the new version of the module, measured in the metrics of result (finishing them is up to the caller).
+     * A CancellationException thrown by the listener of the metrics stops it and leaves the kept units as they were.
+     * @param estree code is ESTree json instead of javascript
+     * @return null if some stage failed (error in result)
+     */
+    public Compilation compile(String code, boolean estree, BatchCompiler.Result result)
+    {
+        Metrics metrics = result.getMetrics();
+        try {
+            String jsonCode = estree ? code : BatchCompiler.frontend(code, result);
+            if(jsonCode == null)
+                return null;
+
+            int[] span = new int[2];
+            List<String> body = body(jsonCode, span);
+            List<Unit> units = body == null ? null : split(body);
+            Compilation c = null;
+            if(units != null)
+            {
+                JsonObject root = Parser.readJson(jsonCode.substring(0, span[0]) + "[]" + jsonCode.substring(span[1]));
+                metrics.lap(Stage.JSON);
+                c = incremental(root, units, result);
+            }
+            if(c == null)
+                return full(jsonCode, result);
+
+            if(Boolean.getBoolean(VERIFY_PROPERTY))
+            {
+                Compilation f = full(jsonCode, new BatchCompiler.Result(null));
+                if(f == null || !f.getCode().equals(c.getCode())) {
+                    Logger.getLogger("info").warning("Incremental compilation differs from the full one ("
+                                                     + c.getReused() + " units reused)");
+                    return full(jsonCode, result);
+                }
+                //the full compilation forgot them
+                keep(units);
+            }
+            return c;
+        }
+        catch (CancellationException e) {
+            throw e;
+        }
+        catch (RuntimeException | StackOverflowError e) {
+            result.setErrorMessage(BatchCompiler.errorMessage(e));
+            return null;
+        }
+    }
+
+    /**
+     * Forgets every kept unit : the next module is compiled in full.
+     */
+    public void clear() {
+        artifacts.clear();
+        elements.clear();
+    }
+
+    /**
+     * Elements of the body array of the root object, as json texts, found without reading the json into a tree.
+     * @param span filled with the first and after-last chars of the body array
+     * @return null if code is not an object with a body array of objects
+     */
+    private static List<String> body(String code, int[] span)
+    {
+        List<String> elements = new ArrayList<>();
+        int depth = 0, elementStart = -1;
+        String lastString = null, key = null;
+        boolean inBody = false;
+        span[0] = -1;
+
+        for(int i = 0; i < code.length(); i++)
+        {
+            char c = code.charAt(i);
+            if(Character.isWhitespace(c))
+                continue;
+            if(depth == 0 && c != '{')
+                return null;
+            if(inBody && depth == 2 && elementStart < 0 && c != ']') {
+                if(c != '{')
+                    return null;
+                elementStart = i;
+            }
+
+            switch(c)
+            {
+                case '"':
+                    int end = i + 1;
+                    while(end < code.length() && code.charAt(end) != '"')
+                        end += code.charAt(end) == '\\' ? 2 : 1;
+                    if(end >= code.length())
+                        return null;
+                    if(depth == 1)
+                        lastString = code.substring(i + 1, end);
+                    i = end;
+                    break;
+                case ':':
+                    if(depth == 1)
+                        key = lastString;
+                    break;
+                case ',':
+                    if(depth == 1)
+                        key = null;
+                    else if(inBody && depth == 2) {
+                        if(elementStart < 0)
+                            return null;
+                        elements.add(code.substring(elementStart, i).trim());
+                        elementStart = -1;
+                    }
+                    break;
+                case '[':
+                    if(depth == 1 && "body".equals(key))
+                    {
+                        //a second body : Gson would keep the last one
+                        if(span[0] >= 0)
+                            return null;
+                        span[0] = i;
+                        inBody = true;
+                    }
+                    depth++;
+                    break;
+                case '{':
+                    depth++;
+                    break;
+                case ']':
+                case '}':
+                    depth--;
+                    if(inBody && depth == 1)
+                    {
+                        if(elementStart >= 0)
+                            elements.add(code.substring(elementStart, i).trim());
+                        span[1] = i + 1;
+                        inBody = false;
+                    }
+                    if(depth == 0)
+                        //the rest of the document is left to Gson
+                        return span[0] < 0 || inBody ? null : elements;
+                    break;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return units of the body of the Program ; null if it doesn't start with a function declaration
+     */
+    private List<Unit> split(List<String> body)
+    {
+        List<Unit> units = new ArrayList<>();
+        for(String text : body)
+        {
+            Element e = elements.get(text);
+            if(e == null) {
+                JsonObject item = Parser.readJson(text);
+                e = new Element(hash(item), item.has("type") && FUNCTION_DECLARATION.equals(item.get("type").getAsString()));
+            }
+            if(e.function)
+                units.add(new Unit());
+            else if(units.isEmpty())
+                return null;
+
+            Unit u = units.get(units.size() - 1);
+            u.texts.add(text);
+            u.elements.add(e);
+        }
+
+        for(Unit u : units)
+        {
+            StringBuilder hash = new StringBuilder();
+            for(Element e : u.elements)
+                hash.append(e.hash).append(' ');
+            u.hash = hash.toString();
+        }
+        return units;
+    }
+
+    /**
+     * Units and statements of the module compiled, for the next one.
+     */
+    private void keep(List<Unit> units)
+    {
+        artifacts = new HashMap<>();
+        elements = new HashMap<>();
+        for(Unit u : units)
+        {
+            artifacts.put(u.hash, u.artifact);
+            for(int i = 0; i < u.texts.size(); i++)
+                elements.put(u.texts.get(i), u.elements.get(i));
+        }
+    }
+
+    /**
+     * @return the compilation ; null if the module has to be compiled in full
+     */
+    private Compilation incremental(JsonObject root, List<Unit> units, BatchCompiler.Result result)
+    {
+        Metrics metrics = result.getMetrics();
+        for(Unit u : units)
+            u.artifact = artifacts.get(u.hash);
+
+        Node hir;
+        ArrayList<SymbolTable> tables;
+        FunctionRegistry functions;
+
+        while(true)
+        {
+            //units compiled again start from fresh nodes, with nothing inferred
+            for(Unit u : units)
+                if(u.artifact == null)
+                    u.nodes = null;
+
+            do {
+                for(Unit u : units)
+                    if(u.nodes == null && !parse(root, u))
+                        return null;
+            } while(invalidate(units, null, null));
+
+            hir = new Node(JSONType.START);
+            tables = new ArrayList<>();
+            functions = new FunctionRegistry();
+            for(Unit u : units)
+            {
+                for(Node n : u.nodes)
+                    hir.addAdj(n);
+                for(SymbolTable st : u.tables)
+                    if(!functions.register(st))
+                        return null;
+                tables.addAll(u.tables);
+            }
+            metrics.lap(Stage.PARSER);
+
+            Set<Node> firstNodes = Collections.newSetFromMap(new IdentityHashMap<>());
+            for(Unit u : units)
+                if(u.artifact == null)
+                    firstNodes.add(u.nodes.get(0));
+            TypeInference ti = new TypeInference(tables, hir);
+            List<Node> touched = ti.run(firstNodes);
+            metrics.lap(Stage.INFERENCE);
+            if(ti.getErrorMessage() != null)
+                return null;
+
+            if(!invalidate(units, touched, functions))
+                break;
+            metrics.begin();
+        }
+
+        metrics.countHir(hir);
+        metrics.countTables(tables);
+        metrics.begin();
+
+        Map<String, Set<String>> callers = new HashMap<>();
+        Map<String, Set<String>> incoming = new HashMap<>();
+        calls(units, callers, incoming);
+        StringBuilder code = new StringBuilder();
+        int compiled = 0;
+        for(Unit u : units)
+        {
+            if(u.artifact == null)
+            {
+                Node start = new Node(JSONType.START);
+                for(Node n : u.nodes)
+                    start.addAdj(n);
+                CodeGenerator cg = new CodeGenerator(start, tables);
+                cg.run();
+                u.artifact = new Artifact(u, slice(u.tables, callers), slice(u.tables, incoming),
+                                          callees(u.calls, functions), cg.getCode());
+                compiled++;
+            }
+            code.append(u.artifact.code);
+        }
+        keep(units);
+        metrics.setOutputSize(code.length());
+        metrics.lap(Stage.GENERATION);
+
+        return new Compilation(code.toString(), hir, tables, units.size() - compiled, compiled);
+    }
+
+    /**
+     * Parses the unit alone (a Program of only its statements), or takes the nodes of its artifact.
+     * @return false on a syntax error
+     */
+    private static boolean parse(JsonObject root, Unit u)
+    {
+        if(u.artifact != null) {
+            u.nodes = u.artifact.nodes;
+            u.tables = u.artifact.tables;
+            u.calls = u.artifact.calls;
+            return true;
+        }
+
+        JsonObject program = new JsonObject();
+        for(Entry<String, JsonElement> e : root.entrySet())
+            program.add(e.getKey(), e.getKey().equals("body") ? array(u.texts) : e.getValue());
+        Parser p = new Parser(program);
+        p.run();
+        if(p.getErrorMessage() != null)
+            return false;
+        u.nodes = p.getHir().getAdj();
+        u.tables = p.getTables();
+        u.calls = calls(u.nodes);
+        return true;
+    }
+
+    /**
+     * Kept units that have to be compiled again : a unit that calls their functions was added or removed, a call
+     * to them passes other arg types, a function they call has another signature, or the inference had to type
+     * their params (touched). Then every unit on a cycle of calls with a unit compiled again is compiled again too,
+     * else the types the cycle gave itself in an earlier compilation would be kept even without what grounded them.
+     * @param touched null before the inference : only the callers are compared (the args are not typed yet)
+     * @return true if a unit was added to the ones compiled again
+     */
+    private static boolean invalidate(List<Unit> units, List<Node> touched, FunctionRegistry functions)
+    {
+        Map<String, Set<String>> callers = new HashMap<>();
+        Map<String, Set<String>> incoming = new HashMap<>();
+        calls(units, callers, incoming);
+
+        boolean changed = false;
+        for(Unit u : units)
+        {
+            if(u.artifact == null)
+                continue;
+            boolean stale = !u.artifact.callers.equals(slice(u.tables, callers));
+            if(touched != null)
+                stale |= touched.contains(u.nodes.get(0)) || !u.artifact.incoming.equals(slice(u.tables, incoming))
+                         || !u.artifact.callees.equals(callees(u.calls, functions));
+            if(stale) {
+                u.artifact = null;
+                u.nodes = null;
+                changed = true;
+            }
+        }
+        return closeCycles(units) || changed;
+    }
+
+    /**
+     * Strongly connected components of the calls between units (Tarjan, with a stack of its own) : every kept unit
+     * of a component with a unit compiled again is compiled again.
+     * @return true if a unit was added to the ones compiled again
+     */
+    private static boolean closeCycles(List<Unit> units)
+    {
+        int n = units.size();
+        Map<String, Integer> owner = new HashMap<>();
+        for(int i = 0; i < n; i++)
+            for(SymbolTable st : units.get(i).tables)
+                owner.put(st.getFunctionName(), i);
+
+        List<List<Integer>> edges = new ArrayList<>();
+        for(Unit u : units)
+        {
+            List<Integer> callees = new ArrayList<>();
+            for(Node call : u.calls) {
+                Integer callee = owner.get(call.getSpecification());
+                if(callee != null)
+                    callees.add(callee);
+            }
+            edges.add(callees);
+        }
+
+        int[] index = new int[n], low = new int[n], next = new int[n];
+        Arrays.fill(index, -1);
+        boolean[] onStack = new boolean[n];
+        ArrayDeque<Integer> stack = new ArrayDeque<>(), dfs = new ArrayDeque<>();
+        int counter = 0;
+        boolean changed = false;
+
+        for(int s = 0; s < n; s++)
+        {
+            if(index[s] >= 0)
+                continue;
+            index[s] = low[s] = counter++;
+            stack.push(s);
+            onStack[s] = true;
+            dfs.push(s);
+
+            while(!dfs.isEmpty())
+            {
+                int v = dfs.peek();
+                if(next[v] < edges.get(v).size())
+                {
+                    int w = edges.get(v).get(next[v]++);
+                    if(index[w] < 0) {
+                        index[w] = low[w] = counter++;
+                        stack.push(w);
+                        onStack[w] = true;
+                        dfs.push(w);
+                    }
+                    else if(onStack[w])
+                        low[v] = Math.min(low[v], index[w]);
+                    continue;
+                }
+
+                dfs.pop();
+                if(!dfs.isEmpty())
+                    low[dfs.peek()] = Math.min(low[dfs.peek()], low[v]);
+                if(low[v] != index[v])
+                    continue;
+
+                List<Unit> component = new ArrayList<>();
+                boolean compiled = false;
+                int w;
+                do {
+                    w = stack.pop();
+                    onStack[w] = false;
+                    component.add(units.get(w));
+                    compiled |= units.get(w).artifact == null;
+                } while(w != v);
+
+                if(compiled && component.size() > 1)
+                    for(Unit u : component)
+                        if(u.artifact != null) {
+                            u.artifact = null;
+                            u.nodes = null;
+                            changed = true;
+                        }
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Whole module at once, like BatchCompiler ; nothing is kept for the next compilation.
+     */
+    private Compilation full(String jsonCode, BatchCompiler.Result result)
+    {
+        JsonObject root = Parser.readJson(jsonCode);
+        result.getMetrics().lap(Stage.JSON);
+        Parser p = BatchCompiler.analyze(new Parser(root), result);
+        if(p == null)
+            return null;
+
+        CodeGenerator cg = new CodeGenerator(p.getHir(), p.getTables());
+        cg.run();
+        result.getMetrics().setOutputSize(cg.getLength());
+        result.getMetrics().lap(Stage.GENERATION);
+        clear();
+        return new Compilation(cg.getCode(), p.getHir(), p.getTables(), 0, p.getHir().getAdj().size());
+    }
+
+    private static JsonArray array(List<String> texts)
+    {
+        JsonArray array = new JsonArray();
+        for(String text : texts)
+            array.add(Parser.readJson(text));
+        return array;
+    }
+
+    /**
+     * CALLEE nodes under nodes, in preorder.
+     */
+    private static List<Node> calls(List<Node> nodes)
+    {
+        List<Node> calls = new ArrayList<>();
+        ArrayDeque<Node> stack = new ArrayDeque<>();
+        for(int i = nodes.size() - 1; i >= 0; i--)
+            stack.push(nodes.get(i));
+
+        while(!stack.isEmpty())
+        {
+            Node node = stack.pop();
+            if(node.getType() == JSONType.CALLEE)
+                calls.add(node);
+            List<Node> adj = node.getAdj();
+            for(int i = adj.size() - 1; i >= 0; i--)
+                stack.push(adj.get(i));
+        }
+        return calls;
+    }
+
+    /**
+     * Calls of every unit, by called function : the hashes of the calling units, and the hash with the arg types.
+     */
+    private static void calls(List<Unit> units, Map<String, Set<String>> callers, Map<String, Set<String>> incoming)
+    {
+        for(Unit u : units)
+            for(Node call : u.calls)
+            {
+                StringBuilder types = new StringBuilder(u.hash).append(' ');
+                for(Node arg : call.getAdj()) {
+                    Descriptor d = arg.getReference();
+                    types.append(d == null ? DataType.NOTASSIGNED : d.getType()).append(',');
+                }
+                callers.computeIfAbsent(call.getSpecification(), k -> new TreeSet<>()).add(u.hash);
+                incoming.computeIfAbsent(call.getSpecification(), k -> new TreeSet<>()).add(types.toString());
+            }
+    }
+
+    /**
+     * @return the part of byFunction about the functions of tables
+     */
+    private static Map<String, Set<String>> slice(List<SymbolTable> tables, Map<String, Set<String>> byFunction)
+    {
+        Map<String, Set<String>> mine = new HashMap<>();
+        for(SymbolTable st : tables)
+            mine.put(st.getFunctionName(), byFunction.getOrDefault(st.getFunctionName(), Collections.emptySet()));
+        return mine;
+    }
+
+    /**
+     * @return callee -> return type and params (with their types) of the functions called
+     */
+    private static Map<String, String> callees(List<Node> calls, FunctionRegistry functions)
+    {
+        Map<String, String> callees = new HashMap<>();
+        for(Node call : calls)
+        {
+            SymbolTable st = functions.get(call.getSpecification());
+            if(st == null) {
+                callees.put(call.getSpecification(), "");
+                continue;
+            }
+            StringBuilder signature = new StringBuilder().append(st.getFunctionReturn()).append('(');
+            for(Descriptor d : st.getParams())
+                signature.append(d.getType()).append(',');
+            callees.put(call.getSpecification(), signature.append(')').toString());
+        }
+        return callees;
+    }
+
+    /**
+     * SHA-256 of the ESTree subtree of item : the same for any layout of its json text.
+     */
+    private static String hash(JsonElement item)
+    {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        //closing brackets and keys are pushed as strings, json values as themselves
+        StringBuilder text = new StringBuilder();
+        ArrayDeque<Object> stack = new ArrayDeque<>();
+        stack.push(item);
+
+        while(!stack.isEmpty())
+        {
+            Object top = stack.pop();
+            if(top instanceof String)
+                text.append((String) top);
+            else
+            {
+                JsonElement e = (JsonElement) top;
+                if(e.isJsonObject())
+                {
+                    text.append('{');
+                    stack.push("}");
+                    List<Entry<String, JsonElement>> entries = new ArrayList<>(e.getAsJsonObject().entrySet());
+                    for(int i = entries.size() - 1; i >= 0; i--)
+                    {
+                        stack.push(entries.get(i).getValue());
+                        stack.push(entries.get(i).getKey() + ':');
+                    }
+                }
+                else if(e.isJsonArray())
+                {
+                    text.append('[');
+                    stack.push("]");
+                    JsonArray array = e.getAsJsonArray();
+                    for(int i = array.size() - 1; i >= 0; i--)
+                        stack.push(array.get(i));
+                }
+                else if(e.isJsonNull())
+                    text.append('n');
+                else
+                {
+                    String s = e.getAsString();
+                    text.append(s.length()).append('"').append(s);
+                }
+            }
+
+            if(text.length() >= DIGEST_CHUNK) {
+                digest.update(text.toString().getBytes(StandardCharsets.UTF_8));
+                text.setLength(0);
+            }
+        }
+        digest.update(text.toString().getBytes(StandardCharsets.UTF_8));
+        return Base64.getEncoder().encodeToString(digest.digest());
+    }
+}
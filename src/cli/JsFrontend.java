@@ -0,0 +1,27 @@
+package cli;
+
+import semantic.Exceptions;
+
+import java.io.IOException;
+
+/**
+ * Turns javascript code into the ESTree json (Esprima format) read by parser.Parser.
+ */
+public interface JsFrontend
+{
+    /**
+     * Parses the javascript code.
+     * @param jsCode javascript source
+     * @return ESTree json of the code
+     * @throws Exceptions.SyntaxException when the code has syntax errors (message in the Esprima format)
+     * @throws IOException when the backend itself is not available
+     */
+    String parse(String jsCode) throws Exceptions.SyntaxException, IOException;
+
+    /**
+     * @return name of the frontend in the AstCache keys : frontends write different json for the same code
+     */
+    default String getName() {
+        return getClass().getSimpleName();
+    }
+}
@@ -4,6 +4,15 @@ import codegeneration.CodeGenerator;
 import parser.Parser;
 import semantic.TypeInference;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
 /**
  * Copyright 2017 SPeCS.
  * 
@@ -19,8 +28,31 @@ import semantic.TypeInference;
 
 public class Main {
 
-    public static void main(String[] args)
+    final private static String USAGE = "usage: Main [-o <output dir>] [-j <threads>] [--hir] [--st] [--estree] [--metrics] <file | directory | glob>...\n"
+                                        + "       Main [-o <output dir>] [--hir] [--st] [--estree] [--metrics] -\n"
+                                        + "       Main --watch [-o <output dir>] [--hir] [--st] [--estree] <file | directory | glob>...\n"
+                                        + "       Main --server [-p <port>] [-j <threads>]";
+
+    /**
+     * Without arguments converts the sample code and prints it; with --server runs a CompileServer until the
+     * JVM is stopped; otherwise converts every input in batch (see BatchCompiler) and exits with 1 if some file failed.
+     * .json inputs (every input with --estree) are ESTree json and skip the frontend ; "-" converts stdin to stdout.
+     * --metrics prints the per-stage breakdown (see Metrics) of every input. --watch converts the inputs again each
+     * time they change on disk, only the functions that changed (see IncrementalCompiler), until the JVM is stopped.
+     */
+    public static void main(String[] args) throws IOException
     {
+        if(args.length > 0 && args[0].equals("--server")) {
+            int status = server(args);
+            if(status != 0)
+                System.exit(status);
+            return;
+        }
+        if(args.length > 0) {
+            System.exit(batch(args));
+            return;
+        }
+
         WebCrawler wc = new WebCrawler("code");
         wc.run();
 
@@ -28,10 +60,153 @@ public class Main {
     	p.run();
 
         TypeInference ti = new TypeInference(p.getTables(),p.getHir());
-        ti.run();
+        if(!p.isTruncated())
+            ti.run(ForkJoinPool.commonPool());
+        if(p.getErrorMessage() != null || ti.getErrorMessage() != null) {
+            System.err.print(p.getDiagnostics().format());
+            System.err.print(ti.getDiagnostics().format());
+            System.exit(1);
+            return;
+        }
 
         CodeGenerator cg = new CodeGenerator(p.getHir(),p.getTables());
-        cg.run();
-        System.out.println(cg.getCode());
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, Resources.DEFAULT_CHAR_SET));
+        cg.generateTo(out);
+        System.out.println();
+    }
+
+    private static int server(String[] args) throws IOException
+    {
+        int port = CompileServer.DEFAULT_PORT;
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        for(int i = 1; i < args.length; i++)
+        {
+            if(i + 1 == args.length || !(args[i].equals("-p") || args[i].equals("-j"))) {
+                System.err.println(USAGE);
+                return 2;
+            }
+            int value = number(args[i + 1], args[i].equals("-p") ? 0 : 1, args[i].equals("-p") ? 65535 : Integer.MAX_VALUE);
+            if(value < 0) {
+                System.err.println(USAGE);
+                return 2;
+            }
+            if(args[i++].equals("-p"))
+                port = value;
+            else
+                threads = value;
+        }
+
+        CompileServer server = new CompileServer(port, threads);
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+        server.start();
+        return 0;
+    }
+
+    /**
+     * @return value as an int between min and max ; -1 if it isn't one
+     */
+    private static int number(String value, int min, int max)
+    {
+        try {
+            int n = Integer.parseInt(value);
+            return n >= min && n <= max ? n : -1;
+        }
+        catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static int batch(String[] args) throws IOException
+    {
+        String outputDir = "result";
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean hir = false, st = false, estree = false, metrics = false, watch = false;
+        List<String> inputs = new ArrayList<>();
+
+        for(int i = 0; i < args.length; i++)
+        {
+            switch (args[i]) {
+                case "-o":
+                    if(++i == args.length) {
+                        System.err.println(USAGE);
+                        return 2;
+                    }
+                    outputDir = args[i];
+                    break;
+                case "-j":
+                    if(++i == args.length) {
+                        System.err.println(USAGE);
+                        return 2;
+                    }
+                    threads = number(args[i], 1, Integer.MAX_VALUE);
+                    if(threads < 0) {
+                        System.err.println(USAGE);
+                        return 2;
+                    }
+                    break;
+                case "--hir":
+                    hir = true;
+                    break;
+                case "--st":
+                    st = true;
+                    break;
+                case "--estree":
+                    estree = true;
+                    break;
+                case "--metrics":
+                    metrics = true;
+                    break;
+                case "--watch":
+                    watch = true;
+                    break;
+                default:
+                    inputs.add(args[i]);
+            }
+        }
+
+        if(inputs.isEmpty()) {
+            System.err.println(USAGE);
+            return 2;
+        }
+
+        BatchCompiler compiler = new BatchCompiler(Paths.get(outputDir));
+        compiler.setDumpHir(hir);
+        compiler.setDumpSymbolTable(st);
+
+        if(inputs.contains("-"))
+        {
+            if(inputs.size() > 1 || watch) {
+                System.err.println(USAGE);
+                return 2;
+            }
+            //only the code on stdout, so it can be piped
+            Writer out = new BufferedWriter(new OutputStreamWriter(System.out, Resources.DEFAULT_CHAR_SET));
+            BatchCompiler.Result r = compiler.compile(System.in, estree, out);
+            if(metrics)
+                System.err.print(r.getMetrics().format());
+            if(r.getErrorMessage() != null) {
+                System.err.println(r.formatErrors("  "));
+                return 1;
+            }
+            return 0;
+        }
+
+        if(watch) {
+            compiler.watch(BatchCompiler.collect(inputs, estree), System.out);
+            return 0;
+        }
+
+        long start = System.nanoTime();
+        List<BatchCompiler.Result> results = compiler.run(BatchCompiler.collect(inputs, estree), threads);
+        if(metrics)
+            for(BatchCompiler.Result r : results)
+                System.out.println(r.getSource().getFile() + "\n" + r.getMetrics().format());
+        BatchCompiler.printSummary(results, System.nanoTime() - start, System.out);
+
+        for(BatchCompiler.Result r : results)
+            if(r.getErrorMessage() != null)
+                return 1;
+        return 0;
     }
 }
@@ -0,0 +1,266 @@
+package cli;
+
+import cli.Resources.JSONType;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import parser.Node;
+import parser.SymbolTable;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Measures of one compilation, reported by the stages as they end : wall time and bytes allocated by the
+ * compiling thread in each stage, HIR nodes by JSONType, Symbol Table sizes and size of the generated code.
+ *
+ * Each stage is also a JFR event (js2java.Stage), and finish() adds the compilation to MetricsRegistry
+ * (totals, also on JMX) and emits a js2java.Compilation event.
+ */
+public class Metrics
+{
+    public enum Stage {
+        READ,           //input file or stdin
+        FRONTEND,       //WebCrawler : javascript to ESTree json
+        JSON,           //Gson tree of the json (Parser(String))
+        PARSER,         //analyzeBody : HIR and Symbol Tables
+        INFERENCE,
+        GENERATION
+    }
+
+    @Name("js2java.Stage")
+    @Label("Compiler Stage")
+    @Category("js2java")
+    static class StageEvent extends Event
+    {
+        @Label("Source")
+        String source;
+
+        @Label("Stage")
+        String stage;
+
+        @Label("Allocated")
+        @DataAmount
+        long allocated;
+    }
+
+    @Name("js2java.Compilation")
+    @Label("Compilation")
+    @Category("js2java")
+    static class CompilationEvent extends Event
+    {
+        @Label("Source")
+        String source;
+
+        @Label("Failed")
+        boolean failed;
+
+        @Label("HIR Nodes")
+        int nodes;
+
+        @Label("Symbol Tables")
+        int tables;
+
+        @Label("Output Size")
+        @DataAmount
+        long outputSize;
+    }
+
+    final private static ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final String source;
+    private final long[] nanos = new long[Stage.values().length];
+    private final long[] allocated = new long[Stage.values().length];
+    private final int[] nodes = new int[JSONType.values().length];
+    private int tables, params, locals;
+    private long outputSize;
+
+    private long startNanos, startBytes;
+    private Consumer<Stage> listener;
+    private StageEvent stageEvent;
+    private final CompilationEvent compilationEvent = new CompilationEvent();
+
+    /**
+     * @param source name of the input, for the events and the breakdown
+     */
+    public Metrics(String source)
+    {
+        this.source = source;
+        compilationEvent.begin();
+        begin();
+    }
+
+    /**
+     * Starts the clock of the next stage ; lap already does it, this is for work that shouldn't be measured.
+     */
+    public void begin()
+    {
+        stageEvent = new StageEvent();
+        stageEvent.begin();
+        startBytes = allocatedBytes();
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * Ends stage (the time since begin or the last lap) and starts the next one.
+     */
+    public void lap(Stage stage)
+    {
+        long now = System.nanoTime();
+        long bytes = allocatedBytes() - startBytes;
+        nanos[stage.ordinal()] += now - startNanos;
+        allocated[stage.ordinal()] += bytes;
+
+        stageEvent.end();
+        if(stageEvent.shouldCommit()) {
+            stageEvent.source = source;
+            stageEvent.stage = stage.name().toLowerCase();
+            stageEvent.allocated = bytes;
+            stageEvent.commit();
+        }
+        if(listener != null)
+            listener.accept(stage);
+        begin();
+    }
+
+    /**
+     * @param listener told on the compiling thread when each stage ends (progress). It can stop the compilation by
+     *                 throwing a CancellationException, which the stages let through.
+     */
+    public void setListener(Consumer<Stage> listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Counts the nodes of the HIR by JSONType.
+     */
+    public void countHir(Node hir)
+    {
+        ArrayDeque<Node> stack = new ArrayDeque<>();
+        stack.push(hir);
+        while(!stack.isEmpty())
+        {
+            Node n = stack.pop();
+            nodes[n.getType().ordinal()]++;
+            for(Node c : n.getAdj())
+                stack.push(c);
+        }
+    }
+
+    public void countTables(List<SymbolTable> symbolTables)
+    {
+        tables += symbolTables.size();
+        for(SymbolTable st : symbolTables) {
+            params += st.getParams().size();
+            locals += st.getLocals().size();
+        }
+    }
+
+    /**
+     * @param size chars of the generated code
+     */
+    public void setOutputSize(long size) {
+        outputSize = size;
+    }
+
+    /**
+     * End of the compilation : adds it to the registry and emits its event.
+     */
+    public void finish(boolean failed)
+    {
+        MetricsRegistry.get().record(this, failed);
+
+        compilationEvent.end();
+        if(compilationEvent.shouldCommit()) {
+            compilationEvent.source = source;
+            compilationEvent.failed = failed;
+            compilationEvent.nodes = getNodeCount();
+            compilationEvent.tables = tables;
+            compilationEvent.outputSize = outputSize;
+            compilationEvent.commit();
+        }
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public long getNanos(Stage stage) {
+        return nanos[stage.ordinal()];
+    }
+
+    /**
+     * @return bytes allocated by the compiling thread during stage (0 if the JVM doesn't measure it)
+     */
+    public long getAllocatedBytes(Stage stage) {
+        return allocated[stage.ordinal()];
+    }
+
+    public int getNodes(JSONType type) {
+        return nodes[type.ordinal()];
+    }
+
+    public int getNodeCount()
+    {
+        int count = 0;
+        for(int n : nodes)
+            count += n;
+        return count;
+    }
+
+    public int getTables() {
+        return tables;
+    }
+
+    public int getParams() {
+        return params;
+    }
+
+    public int getLocals() {
+        return locals;
+    }
+
+    public long getOutputSize() {
+        return outputSize;
+    }
+
+    /**
+     * Per-stage breakdown, for the CLI and the GUI.
+     */
+    public String format()
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-12s %10s %12s%n", "stage", "ms", "alloc KB"));
+        long totalNanos = 0, totalBytes = 0;
+        for(Stage s : Stage.values())
+        {
+            if(nanos[s.ordinal()] == 0)
+                continue;
+            sb.append(String.format("%-12s %10.3f %12.1f%n", s.name().toLowerCase(), nanos[s.ordinal()] / 1e6,
+                                    allocated[s.ordinal()] / 1024.0));
+            totalNanos += nanos[s.ordinal()];
+            totalBytes += allocated[s.ordinal()];
+        }
+        sb.append(String.format("%-12s %10.3f %12.1f%n", "total", totalNanos / 1e6, totalBytes / 1024.0));
+
+        sb.append(String.format("hir nodes: %d  tables: %d  params: %d  locals: %d  output: %d chars%n",
+                                getNodeCount(), tables, params, locals, outputSize));
+        for(JSONType t : JSONType.values())
+            if(nodes[t.ordinal()] > 0)
+                sb.append(String.format("  %-22s %8d%n", t.name().toLowerCase(), nodes[t.ordinal()]));
+        return sb.toString();
+    }
+
+    private static long allocatedBytes()
+    {
+        //HotSpot's ThreadMXBean also measures allocation
+        if(THREADS instanceof com.sun.management.ThreadMXBean)
+            return Math.max(((com.sun.management.ThreadMXBean) THREADS).getCurrentThreadAllocatedBytes(), 0);
+        return 0;
+    }
+}
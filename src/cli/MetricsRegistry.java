@@ -0,0 +1,135 @@
+package cli;
+
+import cli.Metrics.Stage;
+import cli.Resources.JSONType;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Totals of every finished compilation of the JVM (CLI, server, GUI), queried here or over JMX
+ * (js2java:type=Metrics, e.g. in jconsole).
+ */
+public class MetricsRegistry implements MetricsRegistryMXBean
+{
+    final public static String OBJECT_NAME = "js2java:type=Metrics";
+
+    private static MetricsRegistry instance;
+
+    private long compilations, failures, tables, outputSize;
+    private final long[] nanos = new long[Stage.values().length];
+    private final long[] allocated = new long[Stage.values().length];
+    private final long[] nodes = new long[JSONType.values().length];
+    private Metrics last;
+
+    private MetricsRegistry() {}
+
+    /**
+     * The registry of the JVM, registered on the platform MBean server on first use.
+     */
+    public static synchronized MetricsRegistry get()
+    {
+        if(instance == null)
+        {
+            instance = new MetricsRegistry();
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(instance, new ObjectName(OBJECT_NAME));
+            }
+            catch (JMException e) {
+                Logger.getLogger("info").info("Metrics not on JMX : " + e.getMessage());
+            }
+        }
+        return instance;
+    }
+
+    synchronized void record(Metrics m, boolean failed)
+    {
+        compilations++;
+        if(failed)
+            failures++;
+        for(Stage s : Stage.values()) {
+            nanos[s.ordinal()] += m.getNanos(s);
+            allocated[s.ordinal()] += m.getAllocatedBytes(s);
+        }
+        for(JSONType t : JSONType.values())
+            nodes[t.ordinal()] += m.getNodes(t);
+        tables += m.getTables();
+        outputSize += m.getOutputSize();
+        last = m;
+    }
+
+    @Override
+    public synchronized long getCompilations() {
+        return compilations;
+    }
+
+    @Override
+    public synchronized long getFailures() {
+        return failures;
+    }
+
+    @Override
+    public synchronized Map<String, Double> getStageMillis()
+    {
+        Map<String, Double> map = new LinkedHashMap<>();
+        for(Stage s : Stage.values())
+            map.put(s.name().toLowerCase(), nanos[s.ordinal()] / 1e6);
+        return map;
+    }
+
+    @Override
+    public synchronized Map<String, Long> getStageAllocatedBytes()
+    {
+        Map<String, Long> map = new LinkedHashMap<>();
+        for(Stage s : Stage.values())
+            map.put(s.name().toLowerCase(), allocated[s.ordinal()]);
+        return map;
+    }
+
+    @Override
+    public synchronized Map<String, Long> getNodes()
+    {
+        Map<String, Long> map = new LinkedHashMap<>();
+        for(JSONType t : JSONType.values())
+            if(nodes[t.ordinal()] > 0)
+                map.put(t.name().toLowerCase(), nodes[t.ordinal()]);
+        return map;
+    }
+
+    @Override
+    public synchronized long getTables() {
+        return tables;
+    }
+
+    @Override
+    public synchronized long getOutputSize() {
+        return outputSize;
+    }
+
+    @Override
+    public synchronized String getLast() {
+        return last == null ? "" : last.getSource() + "\n" + last.format();
+    }
+
+    /**
+     * @return the last finished compilation, or null
+     */
+    public synchronized Metrics getLastMetrics() {
+        return last;
+    }
+
+    @Override
+    public synchronized void reset()
+    {
+        compilations = failures = tables = outputSize = 0;
+        Arrays.fill(nanos, 0);
+        Arrays.fill(allocated, 0);
+        Arrays.fill(nodes, 0);
+        last = null;
+    }
+}
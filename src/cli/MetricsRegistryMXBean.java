@@ -0,0 +1,39 @@
+package cli;
+
+import java.util.Map;
+
+/**
+ * JMX view of MetricsRegistry, registered as js2java:type=Metrics.
+ */
+public interface MetricsRegistryMXBean
+{
+    long getCompilations();
+
+    long getFailures();
+
+    /**
+     * @return total ms by stage
+     */
+    Map<String, Double> getStageMillis();
+
+    /**
+     * @return total bytes allocated by stage
+     */
+    Map<String, Long> getStageAllocatedBytes();
+
+    /**
+     * @return total HIR nodes by JSONType
+     */
+    Map<String, Long> getNodes();
+
+    long getTables();
+
+    long getOutputSize();
+
+    /**
+     * @return breakdown of the last compilation
+     */
+    String getLast();
+
+    void reset();
+}
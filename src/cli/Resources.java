@@ -36,6 +36,7 @@ public class Resources
 
 	final public static String DEF_SPC = new String("    ");
     final public static String DEFAULT_CHAR_SET = "UTF-8";
+    final public static String FRONTEND_PROPERTY = "js2java.frontend";
 
     public static String DataTypeToString(DataType type){
     	switch (type){
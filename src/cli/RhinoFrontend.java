@@ -0,0 +1,361 @@
+package cli;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import net.sourceforge.htmlunit.corejs.javascript.CompilerEnvirons;
+import net.sourceforge.htmlunit.corejs.javascript.EvaluatorException;
+import net.sourceforge.htmlunit.corejs.javascript.Token;
+import net.sourceforge.htmlunit.corejs.javascript.ast.*;
+import semantic.Exceptions;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process backend : parses the code with the Rhino parser shipped in htmlunit-core-js and converts its AST
+ * to the ESTree json that Esprima would return (same node types and same key order, which parser.Parser relies on).
+ * No browser and no network needed.
+ *
+ * Rhino and the conversion recurse once per level of nesting, so they run on threads of their own with a large
+ * stack : deep code parses the same from any caller, whatever the size of its stack. The default of 64 MB parses
+ * an expression nested 20 000 levels deep on a cold JVM (32 MB : 10 000), and more once the parser is compiled.
+ * Deeper outliers need a bigger js2java.frontend.stack (in bytes ; 0 parses on the calling thread). Each thread of
+ * the pool reserves that much address space, one per concurrent parse (cli.Main -j).
+ */
+public class RhinoFrontend implements JsFrontend
+{
+    final public static String STACK_PROPERTY = "js2java.frontend.stack";
+    final private static long STACK_SIZE = Long.getLong(STACK_PROPERTY, 64L << 20);
+
+    //threads are kept for the next parses ; the stack is only reserved, pages are used as the recursion needs them
+    private static ExecutorService parsers;
+
+    private Gson gson = new GsonBuilder()
+                          .disableHtmlEscaping()
+                          .create();
+
+    private static synchronized ExecutorService parsers()
+    {
+        if(parsers == null)
+        {
+            AtomicInteger count = new AtomicInteger();
+            parsers = Executors.newCachedThreadPool(task -> {
+                Thread t = new Thread(null, task, "rhino-frontend-" + count.incrementAndGet(), STACK_SIZE);
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return parsers;
+    }
+
+    @Override
+    public String parse(String jsCode) throws Exceptions.SyntaxException, IOException
+    {
+        if(STACK_SIZE <= 0)
+            return parseHere(jsCode);
+
+        Future<String> json = parsers().submit(() -> parseHere(jsCode));
+        try {
+            return json.get();
+        }
+        catch (InterruptedException e) {
+            json.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while parsing");
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if(cause instanceof Exceptions.SyntaxException)
+                throw (Exceptions.SyntaxException) cause;
+            if(cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if(cause instanceof Error)
+                throw (Error) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    private String parseHere(String jsCode) throws Exceptions.SyntaxException
+    {
+        CompilerEnvirons env = new CompilerEnvirons();
+        env.setRecordingComments(false);
+        env.setRecordingLocalJsDocComments(false);
+
+        AstRoot root;
+        try {
+            root = new net.sourceforge.htmlunit.corejs.javascript.Parser(env).parse(jsCode, "code", 1);
+        }
+        catch (EvaluatorException e) {
+            throw new Exceptions.SyntaxException("Error: Line " + e.lineNumber() + ": " + e.details());
+        }
+
+        return gson.toJson(program(root));
+    }
+
+    private JsonObject program(AstRoot root) throws Exceptions.SyntaxException
+    {
+        JsonObject obj = node("Program");
+        obj.add("body", statements(root));
+        obj.addProperty("sourceType", "script");
+        return obj;
+    }
+
+    private JsonArray statements(Iterable<net.sourceforge.htmlunit.corejs.javascript.Node> block) throws Exceptions.SyntaxException
+    {
+        JsonArray body = new JsonArray();
+        for(net.sourceforge.htmlunit.corejs.javascript.Node n : block)
+            body.add(statement((AstNode) n));
+        return body;
+    }
+
+    private JsonElement statement(AstNode n) throws Exceptions.SyntaxException
+    {
+        if(n == null)
+            return JsonNull.INSTANCE;
+
+        JsonObject obj;
+
+        switch (n.getType())
+        {
+            case Token.FUNCTION: {
+                FunctionNode f = (FunctionNode) n;
+                obj = node("FunctionDeclaration");
+                obj.add("id", expression(f.getFunctionName()));
+                obj.add("params", expressions(f.getParams()));
+                obj.add("body", statement(f.getBody()));
+                obj.addProperty("generator", false);
+                obj.addProperty("expression", false);
+                obj.addProperty("async", false);
+                return obj;
+            }
+            case Token.BLOCK: {
+                obj = node("BlockStatement");
+                obj.add("body", statements(n));
+                return obj;
+            }
+            case Token.EXPR_VOID:
+            case Token.EXPR_RESULT: {
+                obj = node("ExpressionStatement");
+                obj.add("expression", expression(((ExpressionStatement) n).getExpression()));
+                return obj;
+            }
+            case Token.EMPTY:
+                return node("EmptyStatement");
+            case Token.VAR:
+            case Token.LET:
+            case Token.CONST:
+                if(!(n instanceof VariableDeclaration))
+                    break;
+                return variableDeclaration((VariableDeclaration) n);
+            case Token.RETURN: {
+                obj = node("ReturnStatement");
+                obj.add("argument", expression(((ReturnStatement) n).getReturnValue()));
+                return obj;
+            }
+            case Token.IF: {
+                IfStatement s = (IfStatement) n;
+                obj = node("IfStatement");
+                obj.add("test", expression(s.getCondition()));
+                obj.add("consequent", statement(s.getThenPart()));
+                obj.add("alternate", statement(s.getElsePart()));
+                return obj;
+            }
+            case Token.WHILE: {
+                WhileLoop s = (WhileLoop) n;
+                obj = node("WhileStatement");
+                obj.add("test", expression(s.getCondition()));
+                obj.add("body", statement(s.getBody()));
+                return obj;
+            }
+            case Token.DO: {
+                DoLoop s = (DoLoop) n;
+                obj = node("DoWhileStatement");
+                obj.add("body", statement(s.getBody()));
+                obj.add("test", expression(s.getCondition()));
+                return obj;
+            }
+            case Token.FOR: {
+                if(!(n instanceof ForLoop))
+                    break;
+                ForLoop s = (ForLoop) n;
+                obj = node("ForStatement");
+                obj.add("init", s.getInitializer() instanceof VariableDeclaration ?
+                                  variableDeclaration((VariableDeclaration) s.getInitializer()) :
+                                  expression(s.getInitializer()));
+                obj.add("test", expression(s.getCondition()));
+                obj.add("update", expression(s.getIncrement()));
+                obj.add("body", statement(s.getBody()));
+                return obj;
+            }
+            default:
+                break;
+        }
+
+        throw unsupported(n);
+    }
+
+    private JsonObject variableDeclaration(VariableDeclaration v) throws Exceptions.SyntaxException
+    {
+        JsonObject obj = node("VariableDeclaration");
+
+        JsonArray declarations = new JsonArray();
+        for(VariableInitializer init : v.getVariables())
+        {
+            JsonObject d = node("VariableDeclarator");
+            d.add("id", expression(init.getTarget()));
+            d.add("init", expression(init.getInitializer()));
+            declarations.add(d);
+        }
+        obj.add("declarations", declarations);
+        obj.addProperty("kind", v.isConst() ? "const" : (v.isLet() ? "let" : "var"));
+        return obj;
+    }
+
+    private JsonArray expressions(List<AstNode> nodes) throws Exceptions.SyntaxException
+    {
+        JsonArray arr = new JsonArray();
+        for(AstNode n : nodes)
+            arr.add(expression(n));
+        return arr;
+    }
+
+    private JsonElement expression(AstNode n) throws Exceptions.SyntaxException
+    {
+        if(n == null || n.getType() == Token.EMPTY)
+            return JsonNull.INSTANCE;
+
+        JsonObject obj;
+
+        if(n instanceof ParenthesizedExpression)
+            return expression(((ParenthesizedExpression) n).getExpression());
+
+        if(n instanceof Name) {
+            obj = node("Identifier");
+            obj.addProperty("name", ((Name) n).getIdentifier());
+            return obj;
+        }
+        if(n instanceof NumberLiteral) {
+            NumberLiteral l = (NumberLiteral) n;
+            double number = l.getNumber();
+            obj = node("Literal");
+            if(number == Math.rint(number) && Math.abs(number) < Long.MAX_VALUE)
+                obj.addProperty("value", (long) number);
+            else
+                obj.addProperty("value", number);
+            obj.addProperty("raw", l.getValue());
+            return obj;
+        }
+        if(n instanceof StringLiteral) {
+            obj = node("Literal");
+            obj.addProperty("value", ((StringLiteral) n).getValue());
+            obj.addProperty("raw", n.toSource());
+            return obj;
+        }
+        if(n instanceof KeywordLiteral && (n.getType() == Token.TRUE || n.getType() == Token.FALSE || n.getType() == Token.NULL)) {
+            obj = node("Literal");
+            if(n.getType() == Token.NULL)
+                obj.add("value", JsonNull.INSTANCE);
+            else
+                obj.addProperty("value", n.getType() == Token.TRUE);
+            obj.addProperty("raw", n.toSource());
+            return obj;
+        }
+        if(n instanceof ArrayLiteral) {
+            obj = node("ArrayExpression");
+            obj.add("elements", expressions(((ArrayLiteral) n).getElements()));
+            return obj;
+        }
+        if(n instanceof FunctionCall && !(n instanceof NewExpression)) {
+            FunctionCall c = (FunctionCall) n;
+            obj = node("CallExpression");
+            obj.add("callee", expression(c.getTarget()));
+            obj.add("arguments", expressions(c.getArguments()));
+            return obj;
+        }
+        if(n instanceof ElementGet) {
+            ElementGet g = (ElementGet) n;
+            obj = node("MemberExpression");
+            obj.addProperty("computed", true);
+            obj.add("object", expression(g.getTarget()));
+            obj.add("property", expression(g.getElement()));
+            return obj;
+        }
+        if(n instanceof PropertyGet) {
+            PropertyGet g = (PropertyGet) n;
+            obj = node("MemberExpression");
+            obj.addProperty("computed", false);
+            obj.add("object", expression(g.getTarget()));
+            obj.add("property", expression(g.getProperty()));
+            return obj;
+        }
+        if(n instanceof Assignment) {
+            Assignment a = (Assignment) n;
+            obj = node("AssignmentExpression");
+            obj.addProperty("operator", AstNode.operatorToString(a.getType()));
+            obj.add("left", expression(a.getLeft()));
+            obj.add("right", expression(a.getRight()));
+            return obj;
+        }
+        if(n instanceof InfixExpression && !(n instanceof ObjectProperty)) {
+            InfixExpression e = (InfixExpression) n;
+            boolean logical = e.getType() == Token.AND || e.getType() == Token.OR;
+            obj = node(logical ? "LogicalExpression" : "BinaryExpression");
+            obj.addProperty("operator", AstNode.operatorToString(e.getType()));
+            obj.add("left", expression(e.getLeft()));
+            obj.add("right", expression(e.getRight()));
+            return obj;
+        }
+        if(n instanceof UnaryExpression) {
+            UnaryExpression u = (UnaryExpression) n;
+            boolean update = u.getType() == Token.INC || u.getType() == Token.DEC;
+            obj = node(update ? "UpdateExpression" : "UnaryExpression");
+            obj.addProperty("operator", unaryOperator(u.getType()));
+            obj.add("argument", expression(u.getOperand()));
+            obj.addProperty("prefix", u.isPrefix());
+            return obj;
+        }
+        if(n instanceof ConditionalExpression) {
+            ConditionalExpression c = (ConditionalExpression) n;
+            obj = node("ConditionalExpression");
+            obj.add("test", expression(c.getTestExpression()));
+            obj.add("consequent", expression(c.getTrueExpression()));
+            obj.add("alternate", expression(c.getFalseExpression()));
+            return obj;
+        }
+
+        throw unsupported(n);
+    }
+
+    private String unaryOperator(int token)
+    {
+        switch (token) {
+            case Token.INC: return "++";
+            case Token.DEC: return "--";
+            case Token.NEG: return "-";
+            case Token.POS: return "+";
+            default: return AstNode.operatorToString(token);
+        }
+    }
+
+    private JsonObject node(String type)
+    {
+        JsonObject obj = new JsonObject();
+        obj.addProperty("type", type);
+        return obj;
+    }
+
+    private Exceptions.SyntaxException unsupported(AstNode n)
+    {
+        return new Exceptions.SyntaxException("Error: Line " + n.getLineno() + ": Unsupported construct " + n.getClass().getSimpleName());
+    }
+}
@@ -0,0 +1,153 @@
+package cli;
+
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.chrome.ChromeDriver;
+import org.openqa.selenium.htmlunit.HtmlUnitDriver;
+import semantic.Exceptions;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Original backend : writes the code in the editor of the Esprima demo page and reads the generated AST.
+ * Browsers are kept in a DriverPool with the page loaded, so only the first requests pay the browser startup.
+ *
+ * System properties :
+ *   js2java.selenium.page    - parser page (default esprima.org demo; a local file:// copy also works)
+ *   js2java.selenium.driver  - "chrome" (needs src/chromedriver.exe) or "htmlunit"
+ *   js2java.selenium.pool    - number of browsers
+ *   js2java.selenium.maxUses - requests served by a browser before it is restarted
+ *   js2java.selenium.timeout - maximum wait for the AST, in ms
+ */
+public class SeleniumFrontend implements JsFrontend
+{
+    final public static String WEBSITE = "http://esprima.org/demo/parse.html";
+    final public static String CHROME_DRIVER = "src/chromedriver.exe";
+
+    final public static String PAGE_PROPERTY = "js2java.selenium.page";
+    final public static String DRIVER_PROPERTY = "js2java.selenium.driver";
+    final public static String POOL_PROPERTY = "js2java.selenium.pool";
+    final public static String MAX_USES_PROPERTY = "js2java.selenium.maxUses";
+    final public static String TIMEOUT_PROPERTY = "js2java.selenium.timeout";
+
+    final private static int POLL_INTERVAL = 10;
+
+    private static SeleniumFrontend shared = null;
+
+    private DriverPool pool;
+    private long timeout;
+    private volatile long lastLatency = -1;
+
+    public SeleniumFrontend(DriverPool pool, long timeout) {
+        this.pool = pool;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Frontend configured by the system properties, shared by every WebCrawler of the JVM.
+     */
+    public static synchronized SeleniumFrontend shared() throws FileNotFoundException
+    {
+        if(shared == null)
+        {
+            DriverPool pool = new DriverPool(System.getProperty(PAGE_PROPERTY, WEBSITE),
+                                             Integer.getInteger(POOL_PROPERTY, 2),
+                                             Integer.getInteger(MAX_USES_PROPERTY, 50),
+                                             driverFactory(System.getProperty(DRIVER_PROPERTY, "chrome")));
+            pool.warmUp();
+            Runtime.getRuntime().addShutdownHook(new Thread(pool::close));
+            shared = new SeleniumFrontend(pool, Long.getLong(TIMEOUT_PROPERTY, 10000));
+        }
+        return shared;
+    }
+
+    public static Supplier<WebDriver> driverFactory(String name) throws FileNotFoundException
+    {
+        if(name.equalsIgnoreCase("htmlunit"))
+            return () -> new HtmlUnitDriver(true);
+
+        File chromeDriver = new File(CHROME_DRIVER);
+
+        if (!chromeDriver.exists()){
+            throw new FileNotFoundException("Web driver não encontrada.");
+        }
+
+        System.setProperty("webdriver.chrome.driver", chromeDriver.getAbsolutePath());
+
+        return ChromeDriver::new;
+    }
+
+    @Override
+    public String parse(String jsCode) throws Exceptions.SyntaxException, IOException
+    {
+        String parsedCode = "";
+
+        DriverPool.Session session;
+        try {
+            session = pool.acquire();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        }
+
+        long start = System.nanoTime();
+        try
+        {
+            WebDriver driver = session.getDriver();
+            driver.manage().timeouts().setScriptTimeout(timeout, TimeUnit.MILLISECONDS);
+
+            //the demo fills 'syntax' asynchronously after the editor changes : clear it and poll until it comes back
+            JavascriptExecutor js = (JavascriptExecutor) driver;
+            Object result = js.executeAsyncScript(
+                "       var code = arguments[0];" +
+                  "        var done = arguments[arguments.length - 1];" +
+                  "        id('syntax').value = '';" +
+                  "        window.editor.setText(code);" +
+                  "        (function poll(){ "
+                  + "var a = id('syntax').value; "
+                  + "if(a) done(a); else setTimeout(poll, " + POLL_INTERVAL + "); "
+                  + "})();"
+
+                , jsCode);
+
+            parsedCode = result == null ? "" : result.toString();
+        }
+        catch (TimeoutException e) {
+            throw new IOException("Esprima did not answer in " + timeout + " ms");
+        }
+        catch (WebDriverException e) {
+            throw new IOException("Browser session failed : " + e.getMessage(), e);
+        }
+        finally {
+            pool.release(session);
+        }
+
+        lastLatency = (System.nanoTime() - start) / 1000000;
+        if(Trace.isEnabled(Trace.Level.DEBUG))
+            Trace.log(Trace.Level.DEBUG, "Esprima parse took " + lastLatency + " ms");
+
+        if(parsedCode.contains("Error"))
+            throw new Exceptions.SyntaxException(parsedCode);
+
+        return parsedCode;
+    }
+
+    /**
+     * Time of the last parse in ms (-1 before the first one).
+     */
+    public long getLastLatency() {
+        return lastLatency;
+    }
+
+    public DriverPool getPool() {
+        return pool;
+    }
+}
@@ -0,0 +1,85 @@
+package cli;
+
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+
+/**
+ * Debug tracing of the compiler stages. Off by default : call sites check isEnabled before building
+ * the message, so a disabled trace costs one field read.
+ *
+ * System properties :
+ *   js2java.trace      - OFF (default), INFO, DEBUG or TRACE
+ *   js2java.trace.file - file that receives the trace (default stderr)
+ */
+public class Trace
+{
+    public enum Level {
+        OFF,
+        INFO,       //one line per stage
+        DEBUG,      //one line per HIR node
+        TRACE       //one line per json entry
+    }
+
+    final public static String LEVEL_PROPERTY = "js2java.trace";
+    final public static String FILE_PROPERTY = "js2java.trace.file";
+
+    private static volatile Level level = Level.OFF;
+    private static PrintWriter sink = new PrintWriter(System.err, true);
+
+    static {
+        String file = System.getProperty(FILE_PROPERTY);
+        if(file != null)
+        {
+            try {
+                setSink(new OutputStreamWriter(new FileOutputStream(file), Resources.DEFAULT_CHAR_SET));
+            }
+            catch (FileNotFoundException | UnsupportedEncodingException e) {
+                System.err.println("Cannot open trace file " + file);
+            }
+        }
+
+        //after the sink, so a misspelled level is reported where the trace would have gone
+        String name = System.getProperty(LEVEL_PROPERTY);
+        if(name != null)
+        {
+            try {
+                level = Level.valueOf(name.trim().toUpperCase());
+            }
+            catch (IllegalArgumentException e) {
+                sink.println("Unknown trace level " + name + " in " + LEVEL_PROPERTY + ", tracing is OFF");
+            }
+        }
+    }
+
+    public static boolean isEnabled(Level l) {
+        return l.compareTo(level) <= 0 && l != Level.OFF;
+    }
+
+    public static void log(Level l, String message)
+    {
+        if(!isEnabled(l))
+            return;
+
+        synchronized (Trace.class) {
+            sink.println(message);
+        }
+    }
+
+    public static Level getLevel() {
+        return level;
+    }
+
+    public static void setLevel(Level l) {
+        level = l;
+    }
+
+    public static synchronized void setSink(Writer writer)
+    {
+        sink.flush();
+        sink = new PrintWriter(writer, true);
+    }
+}
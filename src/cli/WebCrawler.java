@@ -1,89 +1,68 @@
 package cli;
 
-import org.openqa.selenium.By;
-import org.openqa.selenium.JavascriptExecutor;
-import org.openqa.selenium.WebDriver;
-import org.openqa.selenium.chrome.ChromeDriver;
+import semantic.Exceptions;
 
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.UnsupportedEncodingException;
-
-import static java.lang.Thread.sleep;
+import java.io.IOException;
 
+/**
+ * Gets the ESTree json of some javascript code through a JsFrontend.
+ * The backend is chosen with the system property "js2java.frontend" : "rhino" (default, in-process)
+ * or "selenium" (Esprima demo page in Chrome). Results are kept in the shared AstCache unless "js2java.cache" is false.
+ */
 public class WebCrawler
 {
     private String jsCode;
     private String jsonCode;
     private String errorMessage;
+    private JsFrontend frontend;
 
     public WebCrawler(String jsCode){
+        this(jsCode, null);
+    }
+
+    public WebCrawler(String jsCode, JsFrontend frontend){
         this.jsCode = jsCode;
         this.jsonCode = "";
         this.errorMessage = null;
+        this.frontend = frontend;
     }
 
+    /**
+     * Guarda o json que o frontend faz. caso o codigo fornecido tenha erros, o json fica uma empty string
+     * e a mensagem de erro fica em errorMessage.
+     */
     public void run(){
         try
         {
-            parseJStoJson();
+            if(frontend == null)
+                frontend = defaultFrontend();
+            jsonCode = frontend.parse(jsCode);
         }
-        catch (UnsupportedEncodingException e) {
-            e.printStackTrace();
+        catch (Exceptions.SyntaxException e) {
+            errorMessage = e.getMessage();
         }
-        catch (FileNotFoundException e) {
-            e.printStackTrace();
-        }
-        catch (InterruptedException e) {
+        catch (IOException e) {
             e.printStackTrace();
         }
     }
 
-    /**
-     * Retorna json que o esprima faz. caso o codigo fonecido tenha erros, a funcao retorna uma empty string.
-     * @return
-     * @throws UnsupportedEncodingException
-     * @throws FileNotFoundException
-     * @throws InterruptedException
-     */
-    public void parseJStoJson() throws UnsupportedEncodingException, FileNotFoundException, InterruptedException {
-
-        String parsedCode = "";
-        String website = "http://esprima.org/demo/parse.html";
-
-        File chromeDriver = new File("src/chromedriver.exe");
+    public static JsFrontend defaultFrontend() throws IOException {
+        JsFrontend frontend = frontendFor(System.getProperty(Resources.FRONTEND_PROPERTY, "rhino"));
+        if(AstCache.isEnabled())
+            return new CachingFrontend(AstCache.shared(), frontend);
+        return frontend;
+    }
 
-        if (!chromeDriver.exists()){
-            throw new FileNotFoundException("Web driver não encontrada.");
+    public static JsFrontend frontendFor(String name) throws IOException {
+        switch (name.toLowerCase()) {
+            case "selenium":
+            case "esprima":
+                return SeleniumFrontend.shared();
+            case "rhino":
+                return new RhinoFrontend();
+            default:
+                throw new IllegalArgumentException("Unknown frontend " + name);
         }
-
-        System.setProperty("webdriver.chrome.driver", chromeDriver.getAbsolutePath());
-
-        WebDriver driver = new ChromeDriver();
-
-        driver.get(website);
-
-        JavascriptExecutor js = (JavascriptExecutor) driver;
-        js.executeScript(
-            "       var code = arguments[0];" +
-              "        window.editor.setText(code);" +
-              "        setTimeout(function(){ "
-              + "var a = id('syntax').value; "
-              + "window.document.write('<div id=\"aqui\"><p>'+a+'</p></div>'); "
-              + "},1000);"
-
-            , jsCode);
-
-        sleep(1100);
-
-        parsedCode = driver.findElement(By.id("aqui")).getText();
-
-        if(parsedCode.contains("Error"))
-            errorMessage = parsedCode;
-        else
-            jsonCode = parsedCode;
-
-        driver.close();
     }
 
     public String getJsonCode() {
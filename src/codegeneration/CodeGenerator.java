@@ -3,133 +3,284 @@ package codegeneration;
 import cli.Resources;
 import cli.Resources.DataType;
 import cli.Resources.JSONType;
+import cli.Trace;
 import parser.Descriptor;
+import parser.Keyword;
 import parser.Node;
 import parser.SymbolTable;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.List;
 
 public class CodeGenerator {
     private String                 code      = null;
     private Node                   hir       = null;
     private ArrayList<SymbolTable> st        = null;
-    private String                 spacement = null;
+
+    //every handler appends to the same buffer; indentation is a depth (number of DEF_SPC)
+    private StringBuilder          out       = null;
+    private int                    depth     = 0;
+    //chars generated by the last run or generateTo
+    private long                   length    = 0;
+    //parts of the node being expanded that wait for a child, and nested calls of generate
+    private final ArrayList<Object> parts     = new ArrayList<>();
+    private int                    level     = 0;
+    private static final int       MAX_RECURSION = 64;
+
+    private static final String[]  INDENTS   = new String[32];
+    static {
+        INDENTS[0] = "";
+        for(int i = 1; i < INDENTS.length; i++)
+            INDENTS[i] = INDENTS[i-1] + Resources.DEF_SPC;
+    }
 
     public CodeGenerator(Node hir, ArrayList<SymbolTable> st){
         this.hir = hir;
         this.st = st;
-        this.spacement = new String("");
     }
 
     public void run(){
-        code = generate(hir);
+        out = new StringBuilder();
+        depth = 0;
+
+        generate(hir);
+
+        code = out.toString();
+        length = code.length();
+        out = null;
+    }
+
+    /**
+     * Same output as run(), but each top level function is written to writer as soon as it is generated,
+     * so only one function is kept in memory. getCode() stays null.
+     */
+    public void generateTo(Writer writer) throws IOException {
+        out = new StringBuilder();
+        depth = 0;
+        length = 0;
+
+        try {
+            if(hir.getType() == JSONType.START) {
+                for(Node n : hir.getAdj()) {
+                    generate(n);
+                    out.append('\n');
+                    flushTo(writer);
+                }
+            }
+            else {
+                generate(hir);
+                flushTo(writer);
+            }
+            writer.flush();
+        }
+        finally {
+            out = null;
+        }
+    }
+
+    /**
+     * Writes the generated code to file (created or truncated) through its FileChannel.
+     */
+    public void generateTo(Path file) throws IOException {
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                   StandardOpenOption.TRUNCATE_EXISTING);
+            Writer writer = new BufferedWriter(Channels.newWriter(channel, Resources.DEFAULT_CHAR_SET))) {
+            generateTo(writer);
+        }
+    }
+
+    private void flushTo(Writer writer) throws IOException {
+        //the buffer keeps its capacity for the next function
+        writer.append(out);
+        length += out.length();
+        out.setLength(0);
+    }
+
+    /**
+     * Indentation parts of a node, listed by the handlers with its strings and children.
+     */
+    private enum Op { INDENT, DEEPER, SHALLOWER }
+
+    /**
+     * Writes node and everything under it. A handler lists the parts of its node in output order : strings and
+     * indentation changes are written right away while nothing is pending, and a child is generated by a nested
+     * call up to MAX_RECURSION levels. Deeper children, and everything that follows them, wait on a stack of
+     * parts, so the depth of the HIR is not limited by the thread stack.
+     */
+    private void generate(Node node){
+        expand(node);
+        if(parts.isEmpty())
+            return;
+
+        ArrayDeque<Object> work = new ArrayDeque<>();
+        pushParts(work);
+
+        while(!work.isEmpty()) {
+            Object part = work.pop();
+
+            if(part instanceof Node) {
+                expand((Node) part);
+                pushParts(work);
+            }
+            else if(part instanceof String)
+                out.append((String) part);
+            else
+                apply((Op) part);
+        }
     }
 
-    private String generate(Node node){
-        String content = new String("");
+    private void pushParts(ArrayDeque<Object> work){
+        //pushed backwards so the first part is written first
+        for(int i = parts.size() - 1; i >= 0; i--)
+            work.push(parts.get(i));
+        parts.clear();
+    }
+
+    private void apply(Op o){
+        if(o == Op.INDENT)
+            out.append(indent());
+        else if(o == Op.DEEPER)
+            depth++;
+        else
+            depth--;
+    }
 
+    private void text(String s){
+        if(parts.isEmpty())
+            out.append(s);
+        else
+            parts.add(String.valueOf(s));
+    }
+
+    private void node(Node n){
+        if(parts.isEmpty() && level < MAX_RECURSION) {
+            level++;
+            generate(n);
+            level--;
+        }
+        else
+            parts.add(n);
+    }
+
+    private void op(Op o){
+        if(parts.isEmpty())
+            apply(o);
+        else
+            parts.add(o);
+    }
+
+    private void expand(Node node){
         Resources.JSONType type = node.getType();
 
-        System.out.println(getProperties(node));
+        if(Trace.isEnabled(Trace.Level.DEBUG))
+            Trace.log(Trace.Level.DEBUG, getProperties(node));
 
         switch (type) {
             case START:{
-                for(Node n : node.getAdj())
-                    content += generate(n) + "\n";
+                for(Node n : node.getAdj()) {
+                    node(n);
+                    text("\n");
+                }
                 break;
             }
             /*
             FUNCTION RELATED
              */
             case FUNCTION:{
-                content += handleFunction(node.getSpecification(),node.getAdj());
+                handleFunction(node.getSpecification(),node.getAdj());
                 break;
             }
             case RETURN:{
-                content += handleReturn(node.getAdj());
+                handleReturn(node.getAdj());
                 break;
             }
             case CALLEE:{
-                content += handleCallee(node);
+                handleCallee(node);
                 break;
             }
             case ARG:{
-                content += generate(node.getAdj().get(0));
+                node(node.getAdj().get(0));
                 break;
             }
             /*
             INIT AND ASSIGN
              */
             case VARIABLEDECLARATION:{
-                content += handleVariableDeclaration(node);
+                handleVariableDeclaration(node);
                 break;
             }
             case ASSIGNMENT:{
-                content += handleAssignment(node,node.getAdj());
+                handleAssignment(node,node.getAdj());
                 break;
             }
             /*
             VARIABLES
              */
             case IDENTIFIER:{
-                content += node.getReference().getName();
+                text(node.getReference().getName());
                 break;
             }
             case LITERAL:{
-                content += node.getSpecification();
+                text(node.getSpecification());
                 break;
             }
             case ARRAYLOAD:{
-                content += handleArray(node.getAdj());
+                handleArray(node.getAdj());
                 break;
             }
             case ARRAYDECLARATION:{
-                content += handleArrayContent(node.getAdj());
+                handleArrayContent(node.getAdj());
                 break;
             }
             /*
             OPERATIONS = EXPRESSIONS
              */
             case OPERATION:{
-                content += handleOperation(node,node.getAdj());
+                handleOperation(node,node.getAdj());
                 break;
             }
             /*
             CONDITIONS
              */
             case IFSTATEMENT:{
-                content += handleIf(node.getAdj());
+                handleIf(node.getAdj());
                 break;
             }
             /*
             LOOPS
              */
             case WHILESTATEMENT:{
-                content += handleWhile(node.getAdj());
+                handleWhile(node.getAdj());
                 break;
             }
             case DOWHILESTATEMENT:{
-                content += handleDoWhile(node.getAdj());
+                handleDoWhile(node.getAdj());
                 break;
             }
             case FORSTATEMENT:{
-                content += handleFor(node.getAdj());
+                handleFor(node.getAdj());
                 break;
             }
             default:
                 break;
         }
-
-        return content;
     }
 
     /*
     FUNCTION RELATED
      */
-    private String handleFunction(String name,ArrayList<Node> children){
+    private void handleFunction(String name,List<Node> children){
         boolean lastParam = false, firstParam = true;
 
-        String code = new String(spacement + "function " + name + "(");
+        op(Op.INDENT); text("function "); text(name); text("(");
 
         for(Node c : children){
             //parameters
@@ -137,232 +288,237 @@ public class CodeGenerator {
                 if(firstParam)
                     firstParam = false;
                 else
-                    code += ",";
-                code+= c.getReference().getName();
+                    text(",");
+                text(c.getReference().getName());
             }
             //body
             else{
                 if(!lastParam){
                     lastParam = true;
-                    code+= ")\n" + spacement + "{";
-                    spacement += Resources.DEF_SPC;				//add 1 tab
+                    text(")\n"); op(Op.INDENT); text("{");
+                    op(Op.DEEPER);				//add 1 tab
                 }
-                code+="\n" + spacement + generate(c) + endPunctuation(c.getType());
+                text("\n"); op(Op.INDENT);
+                node(c);
+                text(endPunctuation(c.getType()));
             }
         }
 
         //In case of no parameters or body
         if(!lastParam){
-            code+= ")\n" + spacement + "{";
-            spacement += Resources.DEF_SPC;
+            text(")\n"); op(Op.INDENT); text("{");
+            op(Op.DEEPER);
         }
 
-        spacement = spacement.replaceFirst(Resources.DEF_SPC, "");			//rem 1 tab
-        code+= spacement + "\n}";
-        return code;
+        op(Op.SHALLOWER);			//rem 1 tab
+        op(Op.INDENT); text("\n}");
     }
 
-    public String handleReturn(ArrayList<Node> subnodes){
+    private void handleReturn(List<Node> subnodes){
 
-        if(subnodes.size() > 0)
-            return "return " + generate(subnodes.get(0));
+        if(subnodes.size() > 0) {
+            text("return ");
+            node(subnodes.get(0));
+        }
         else
-            return "return null";
+            text("return null");
     }
 
-    public String handleCallee(Node node){
-        String code = new String("");
-
+    private void handleCallee(Node node){
         //function
-        code += node.getSpecification() + "(";
+        text(node.getSpecification()); text("(");
 
         //parameters
         for(int i = 0; i < node.getAdj().size(); i++){
-            code += generate(node.getAdj().get(i));
+            node(node.getAdj().get(i));
             if(i != node.getAdj().size() - 1)
-                code += ",";
+                text(",");
         }
-        code += ")";
-
-        return code;
+        text(")");
     }
 
     /*
     INIT AND ASSIGN
      */
-    private String handleVariableDeclaration(Node node){
-        String code = new String("");
-
+    private void handleVariableDeclaration(Node node){
         //type + name
-        code += Resources.DataTypeToString(node.getReference().getType()) + " " + node.getReference().getName();
+        text(Resources.DataTypeToString(node.getReference().getType())); text(" "); text(node.getReference().getName());
 
         //If direct assignment, = ...
         for(Node n : node.getAdj()){
-            code += " = " + generate(n);
+            text(" = ");
+            node(n);
         }
-
-
-        return code;
     }
 
-    private String handleAssignment(Node node, ArrayList<Node> assignment){
-        String code = new String("");
+    private void handleAssignment(Node node, List<Node> assignment){
         int i = 0;
 
-        if(node.getSpecification().equals("storearray"))
-            code += generate(assignment.get(i)) + " = ";
-        else
-            code += assignment.get(i).getReference().getName() + " " + node.getSpecification() + " ";
+        if(node.getKeyword() == Keyword.STOREARRAY) {
+            node(assignment.get(i));
+            text(" = ");
+        }
+        else {
+            text(assignment.get(i).getReference().getName()); text(" "); text(node.getSpecification()); text(" ");
+        }
 
         i++;
 
         //process right assign
         while(i < node.getAdj().size()){
-            code += generate(node.getAdj().get(i));
+            node(node.getAdj().get(i));
             i++;
         }
-        return code;
     }
 
     /*
     ARRAYS
      */
-    public String handleArray(ArrayList<Node> subnodes){
-        String code = new String("");
+    private void handleArray(List<Node> subnodes){
         boolean index = false;
 
         //index is in the last subnode
         for(Node n : subnodes){
-            if(index)
-                code += "[" + generate(n) + "]";
+            if(index) {
+                text("[");
+                node(n);
+                text("]");
+            }
             else{
-                code += generate(n);
+                node(n);
                 index = true;
             }
         }
-        return code;
     }
 
-    public String handleArrayContent(ArrayList<Node> subnodes){
-        String code = new String("[");
+    private void handleArrayContent(List<Node> subnodes){
         boolean first = true;
 
+        text("[");
         for(Node n : subnodes){
             if(first) first = false;
-            else code += ", ";
-            code +=generate(n);
+            else text(", ");
+            node(n);
         }
-        code+="]";
-        return code;
+        text("]");
     }
 
     /*
     OPERATIONS/EXPRESSIONS
      */
-    public String handleOperation(Node node, ArrayList<Node> subnodes){
-        String code = new String("");
-
+    private void handleOperation(Node node, List<Node> subnodes){
         //op(content)
         if(isSingleLeftOperation(node.getSpecification()) && subnodes.size() == 1){
-            code += node.getSpecification() + "(" + generate(subnodes.get(0)) + ")";
+            text(node.getSpecification()); text("(");
+            node(subnodes.get(0));
+            text(")");
         }
         //(content)op
         else if(isSingleRightOperation(node.getSpecification())){
-            code += generate(node.getAdj().get(0)) + node.getSpecification();
+            node(node.getAdj().get(0));
+            text(node.getSpecification());
         }
         //((content)op(content))
         else{
-            code += "(" + generate(node.getAdj().get(0)); //right
-            code += " " + node.getSpecification() + " ";        //operation
-            code += generate(node.getAdj().get(1)) + ")"; //left
+            text("(");
+            node(node.getAdj().get(0));                         //right
+            text(" "); text(node.getSpecification()); text(" "); //operation
+            node(node.getAdj().get(1));                         //left
+            text(")");
         }
-
-
-        return code;
     }
 
     /*
     CONDITIONS
      */
-    public String handleIf(ArrayList<Node> subnodes){
-        String code = new String("");
-
+    private void handleIf(List<Node> subnodes){
         //if
-        code += "\n" + spacement + "if(" + generate(subnodes.get(0)) + ")\n" +
-                  spacement +  "{\n";
+        text("\n"); op(Op.INDENT); text("if(");
+        node(subnodes.get(0));
+        text(")\n"); op(Op.INDENT); text("{\n");
 
-        spacement += Resources.DEF_SPC;
+        op(Op.DEEPER);
 
         //body
-        for(int i = 1; i < subnodes.size(); i++)
-            code += spacement + generate(subnodes.get(i)) + endPunctuation(subnodes.get(i).getType()) +  "\n";
-
-        spacement = spacement.replaceFirst(Resources.DEF_SPC, "");
-        code += spacement +  "}\n";
+        body(subnodes, 1, subnodes.size());
 
-        return code;
+        op(Op.SHALLOWER);
+        op(Op.INDENT); text("}\n");
     }
 
     /*
     LOOPS
      */
-    public String handleWhile(ArrayList<Node> subnodes){
-        String code = new String("");
-
+    private void handleWhile(List<Node> subnodes){
         //while
-        code += "\n" + spacement + "while(" + generate(subnodes.get(0)) + ")\n" +
-                  spacement +  "{\n";
+        text("\n"); op(Op.INDENT); text("while(");
+        node(subnodes.get(0));
+        text(")\n"); op(Op.INDENT); text("{\n");
 
-        spacement += Resources.DEF_SPC;
+        op(Op.DEEPER);
 
         //body
-        for(int i = 1; i < subnodes.size(); i++)
-            code += spacement + generate(subnodes.get(i)) + endPunctuation(subnodes.get(i).getType()) +  "\n";
+        body(subnodes, 1, subnodes.size());
 
-        spacement = spacement.replaceFirst(Resources.DEF_SPC, "");
-        code += spacement +  "}\n";
-
-        return code;
+        op(Op.SHALLOWER);
+        op(Op.INDENT); text("}\n");
     }
 
-    public String handleDoWhile(ArrayList<Node> subnodes){
-        String code = new String("");
-
+    private void handleDoWhile(List<Node> subnodes){
         //do
-        code += "\n" + spacement + "do\n" +
-                  spacement +  "{\n";
+        text("\n"); op(Op.INDENT); text("do\n"); op(Op.INDENT); text("{\n");
 
-        spacement += Resources.DEF_SPC;
+        op(Op.DEEPER);
 
         //body
-        int i = 0;
-        for(i = 0; i < subnodes.size()-1; i++)
-            code += spacement + generate(subnodes.get(i)) + endPunctuation(subnodes.get(i).getType()) +  "\n";
-        spacement = spacement.replaceFirst(Resources.DEF_SPC, "");
+        int last = subnodes.size()-1;
+        body(subnodes, 0, last);
+        op(Op.SHALLOWER);
 
         //while
-        code += spacement +  "}while(" + generate(subnodes.get(i)) + ")\n";
-
-        return code;
+        op(Op.INDENT); text("}while(");
+        node(subnodes.get(Math.max(last, 0)));
+        text(")\n");
     }
 
-    public String handleFor(ArrayList<Node> subnodes){
-        String code = new String("");
-        code += "\n" + spacement + "for(" +           //for
-                  generate(subnodes.get(0)) + " ; " +   //init
-                  generate(subnodes.get(1)) + " ; " +   //test
-                  generate(subnodes.get(2)) + ")\n" +   //inc
-                  spacement +  "{\n";
+    private void handleFor(List<Node> subnodes){
+        text("\n"); op(Op.INDENT); text("for(");     //for
+        node(subnodes.get(0));                      //init
+        text(" ; ");
+        node(subnodes.get(1));                      //test
+        text(" ; ");
+        node(subnodes.get(2));                      //inc
+        text(")\n"); op(Op.INDENT); text("{\n");
 
-        spacement += Resources.DEF_SPC;
+        op(Op.DEEPER);
 
         //body
-        for(int i = 3; i < subnodes.size(); i++)
-            code += spacement + generate(subnodes.get(i)) + endPunctuation(subnodes.get(i).getType()) +  "\n";
-        spacement = spacement.replaceFirst(Resources.DEF_SPC, "");
-        code += spacement +  "}\n";
+        body(subnodes, 3, subnodes.size());
+        op(Op.SHALLOWER);
+        op(Op.INDENT); text("}\n");
+    }
 
-        return code;
+    /**
+     * Statements of a block, one per line at the current depth.
+     */
+    private void body(List<Node> subnodes, int from, int to){
+        for(int i = from; i < to; i++) {
+            op(Op.INDENT);
+            node(subnodes.get(i));
+            text(endPunctuation(subnodes.get(i).getType())); text("\n");
+        }
+    }
+
+    private String indent(){
+        if(depth <= 0)
+            return INDENTS[0];
+        if(depth < INDENTS.length)
+            return INDENTS[depth];
+
+        StringBuilder spc = new StringBuilder(INDENTS[INDENTS.length-1]);
+        for(int i = INDENTS.length-1; i < depth; i++)
+            spc.append(Resources.DEF_SPC);
+        return spc.toString();
     }
 
 
@@ -387,6 +543,13 @@ public class CodeGenerator {
         return code;
     }
 
+    /**
+     * @return chars of code generated by the last run() or generateTo
+     */
+    public long getLength(){
+        return length;
+    }
+
     public String endPunctuation(JSONType type){
         if(!(type.equals(JSONType.IFSTATEMENT) || type.equals(JSONType.WHILESTATEMENT) ||
                type.equals(JSONType.DOWHILESTATEMENT) || type.equals(JSONType.FORSTATEMENT)))
@@ -408,51 +571,79 @@ public class CodeGenerator {
     }
 
     public DataType getType(Node n){
-        if(n.getReference() == null && n.getAdj().size() != 0){
-            return getType(n.getAdj().get(0));
-        }
-        else
-            return n.getReference().getType();
+        while(n.getReference() == null && n.getAdj().size() != 0)
+            n = n.getAdj().get(0);
+        return n.getReference().getType();
+    }
+
+    public String printHIR(Node n, String spacement) {
+        return printHIR(n, spacement, Long.MAX_VALUE);
     }
 
-    public String printHIR(Node n, String spacement)
+    /**
+     * printHIR, given up past maxChars : every line is indented by its depth, so the dump of deep code grows with
+     * the square of the depth.
+     * @return null if the dump is longer than maxChars
+     */
+    public String printHIR(Node n, String spacement, long maxChars)
     {
-        String res = "\n";
-        res += spacement + "Type  : " + n.getType().toString()+"\n";
-        res += spacement + "Specification : "+n.getSpecification()+"\n";
+        StringBuilder res = new StringBuilder();
 
-        Descriptor d = n.getReference();
-        if(d != null)
-            res += spacement + "Descriptor ( Name : "+ d.getName() + " | Type : "+ d.getType() +" )\n";
+        //preorder on a stack ; the spacement of depth d is spacement and the first 2*d chars of dashes
+        StringBuilder dashes = new StringBuilder();
+        ArrayDeque<Node> nodes = new ArrayDeque<>();
+        ArrayDeque<Integer> depths = new ArrayDeque<>();
+        nodes.push(n);
+        depths.push(0);
 
-        for(Node n1 : n.getAdj())
+        while(!nodes.isEmpty())
         {
-            res += printHIR(n1, spacement+"- ");
+            Node n1 = nodes.pop();
+            int d1 = depths.pop();
+            while(dashes.length() < 2 * d1)
+                dashes.append("- ");
+
+            res.append("\n");
+            res.append(spacement).append(dashes, 0, 2 * d1).append("Type  : ").append(n1.getType().toString()).append("\n");
+            res.append(spacement).append(dashes, 0, 2 * d1).append("Specification : ").append(n1.getSpecification()).append("\n");
+
+            Descriptor d = n1.getReference();
+            if(d != null)
+                res.append(spacement).append(dashes, 0, 2 * d1).append("Descriptor ( Name : ").append(d.getName()).append(" | Type : ").append(d.getType()).append(" )\n");
+
+            if(res.length() > maxChars)
+                return null;
+
+            List<Node> adj = n1.getAdj();
+            for(int i = adj.size() - 1; i >= 0; i--) {
+                nodes.push(adj.get(i));
+                depths.push(d1 + 1);
+            }
         }
-        return res;
+        return res.toString();
     }
 
     public String printSymbolTable(ArrayList<SymbolTable> tables)
     {
-        String res = "\n";
+        StringBuilder res = new StringBuilder("\n");
 
         for(SymbolTable st : tables)
         {
-            res += "Function \n   Name : " + st.getFunctionName() + "\n   Params : \n";
+            res.append("Function \n   Name : ").append(st.getFunctionName()).append("\n   Params : \n");
 
-            for(Descriptor d : st.params)
-                res += "      Name : " + d.getName() + "   AND   Type : " + d.getType()+"\n";
+            for(Descriptor d : st.getParams())
+                res.append("      Name : ").append(d.getName()).append("   AND   Type : ").append(d.getType()).append("\n");
 
-            res += "   Locals : \n";
-            for(Descriptor d : st.locals)
-                res += "      Name : " + d.getName() + "   AND   Type : " + d.getType()+"\n";
+            res.append("   Locals : \n");
+            for(Descriptor d : st.getLocals())
+                res.append("      Name : ").append(d.getName()).append("   AND   Type : ").append(d.getType()).append("\n");
 
             if(st.getFunctionReturn() != DataType.NOTASSIGNED)
-                res += "   Return Type : "+ st.getFunctionReturn().name()+"\n";
+                res.append("   Return Type : ").append(st.getFunctionReturn().name()).append("\n");
             else
-                res += "   Return : void\n";
+                res.append("   Return : void\n");
         }
 
-        return res;
+        return res.toString();
     }
-}
\ No newline at end of file
+}
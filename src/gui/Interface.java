@@ -1,17 +1,28 @@
 package gui;
 
-import cli.WebCrawler;
+import cli.BatchCompiler;
+import cli.IncrementalCompiler;
+import cli.Metrics;
+import cli.Resources;
 import codegeneration.CodeGenerator;
-import parser.Parser;
-import semantic.TypeInference;
 
 import javax.swing.*;
+import javax.swing.Timer;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class Interface
 {
@@ -27,12 +38,117 @@ public class Interface
     private        JTextArea   javaCodeText;
     private        JTextArea   hirText;
     private        JTextArea   stText;
+    private        JTextArea   metricsText;
     private JButton            infoButton;
+    private        JProgressBar progressBar;
+    private        JCheckBox   liveCheckBox;
 
-    private WebCrawler    wc;
-    private Parser        p;
-    private TypeInference ti;
-    private CodeGenerator cg;
+    //pause after the last key typed before a live conversion
+    final private static int LIVE_DELAY_MS = 400;
+
+    //conversions and file writes, one at a time : the compiler keeps the units of the last conversion
+    private final ExecutorService           background = Executors.newSingleThreadExecutor(task -> {
+        Thread t = new Thread(task, "gui-converter");
+        t.setDaemon(true);
+        return t;
+    });
+    private final IncrementalCompiler       compiler = new IncrementalCompiler();
+    private final Timer                     liveTimer = new Timer(LIVE_DELAY_MS, e -> convert());
+    //last conversion started : the ones before it are cancelled
+    private ConversionWorker                worker;
+    //last successful conversion, written by the files button
+    private IncrementalCompiler.Compilation last;
+
+    /**
+     * Texts of a conversion, all made in the background.
+     */
+    private static class Conversion
+    {
+        IncrementalCompiler.Compilation compilation;
+        String errors, code = "", hir = "", symbolTable = "", metrics;
+    }
+
+    /**
+     * Converts a snapshot of the javascript code on the background thread and shows it when done, unless a newer
+     * conversion was started meanwhile. Publishes each stage that ends ; a cancelled conversion stops at the next one.
+     */
+    private class ConversionWorker extends SwingWorker<Conversion, Metrics.Stage>
+    {
+        private final String jsCode;
+
+        ConversionWorker(String jsCode) {
+            this.jsCode = jsCode;
+        }
+
+        @Override
+        protected Conversion doInBackground()
+        {
+            if(isCancelled())
+                return null;
+
+            BatchCompiler.Result result = new BatchCompiler.Result(null);
+            Metrics metrics = result.getMetrics();
+            metrics.setListener(stage -> {
+                if(isCancelled())
+                    throw new CancellationException();
+                publish(stage);
+            });
+
+            //only the functions changed since the last conversion are converted again
+            Conversion conversion = new Conversion();
+            IncrementalCompiler.Compilation c = compiler.compile(jsCode, false, result);
+            metrics.finish(c == null);
+            conversion.metrics = metrics.format();
+            if(c == null) {
+                conversion.errors = result.formatErrors("  ");
+                return conversion;
+            }
+
+            CodeGenerator cg = new CodeGenerator(c.getHir(), c.getTables());
+            conversion.compilation = c;
+            conversion.errors = "Success! (" + c.getCompiled() + "/" + (c.getCompiled() + c.getReused()) + " units converted)";
+            conversion.code = c.getCode();
+            conversion.hir = cg.printHIR(c.getHir(), "");
+            conversion.symbolTable = cg.printSymbolTable(c.getTables());
+            return conversion;
+        }
+
+        @Override
+        protected void process(List<Metrics.Stage> stages)
+        {
+            if(worker != this)
+                return;
+            Metrics.Stage stage = stages.get(stages.size() - 1);
+            progressBar.setValue(stage.ordinal() + 1);
+            progressBar.setString(stage.name().toLowerCase());
+        }
+
+        @Override
+        protected void done()
+        {
+            if(isCancelled() || worker != this)
+                return;
+
+            Conversion conversion;
+            try {
+                conversion = get();
+            }
+            catch (InterruptedException | ExecutionException e) {
+                conversion = new Conversion();
+                conversion.errors = "Conversion failed : " + e.getCause();
+            }
+
+            if(conversion.compilation != null)
+                last = conversion.compilation;
+            errorsText.setText(conversion.errors);
+            javaCodeText.setText(conversion.code);
+            hirText.setText(conversion.hir);
+            stText.setText(conversion.symbolTable);
+            metricsText.setText(conversion.metrics);
+            progressBar.setValue(progressBar.getMaximum());
+            progressBar.setString(conversion.compilation != null ? "done" : "failed");
+        }
+    }
 
     public static void main(final String[] args)
     {
@@ -48,56 +164,61 @@ public class Interface
             @Override
             public void actionPerformed(final ActionEvent e)
             {
-                String errorMessages;
-                errorsText.setText("");
-                javaCodeText.setText("");
-                hirText.setText("");
-                stText.setText("");
-
-                wc = new WebCrawler(textAreaJSCode.getText());
-                wc.run();
-                errorMessages = wc.getErrorMessage();
-                if(errorMessages != null)
-                {
-                    errorsText.setText("Semantic error :\n"+errorMessages);
-                    return;
-                }
-
-                p = new Parser(wc.getJsonCode());
-                p.run();
-                errorMessages = p.getErrorMessage();
-                if(errorMessages != null)
-                {
-                    errorsText.setText("Semantic error :\n"+errorMessages);
-                    return;
-                }
+                liveTimer.stop();
+                convert();
+            }
+        });
+        liveTimer.setRepeats(false);
+        textAreaJSCode.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(final DocumentEvent e) {
+                changed();
+            }
 
-                ti = new TypeInference(p.getTables(),p.getHir());
-                ti.run();
-                errorMessages = ti.getErrorMessage();
-                if(errorMessages != null)
-                {
-                    errorsText.setText("Semantic error :\n\n"+errorMessages);
-                    return;
-                }
+            @Override
+            public void removeUpdate(final DocumentEvent e) {
+                changed();
+            }
 
-                cg = new CodeGenerator(p.getHir(),p.getTables());
-                cg.run();
+            @Override
+            public void changedUpdate(final DocumentEvent e) {
+                changed();
+            }
 
-                errorsText.setText("Success!");
-                javaCodeText.setText(cg.getCode());
-                hirText.setText(cg.printHIR(p.getHir(),""));
-                stText.setText(cg.printSymbolTable(p.getTables()));
+            private void changed()
+            {
+                if(liveCheckBox.isSelected())
+                    liveTimer.restart();
+            }
+        });
+        liveCheckBox.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(final ActionEvent e)
+            {
+                if(liveCheckBox.isSelected())
+                    liveTimer.restart();
+                else
+                    liveTimer.stop();
             }
         });
         files.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(final ActionEvent e)
             {
-                //writeInFile("output.java",cg.getCode());
-                writeInFile("hir.txt",cg.printHIR(p.getHir(),""));
-                writeInFile("symbolTable.txt",cg.printSymbolTable(p.getTables()));
-                writeInFile("Main.txt",cg.printSymbolTable(p.getTables()));
+                final IncrementalCompiler.Compilation c = last;
+                if(c == null)
+                    return;
+                background.execute(() -> {
+                    CodeGenerator cg = new CodeGenerator(c.getHir(), c.getTables());
+                    try {
+                        Files.write(Paths.get("result", "output.java"), c.getCode().getBytes(Resources.DEFAULT_CHAR_SET));
+                    } catch (IOException e1) {
+                        System.err.println("Error writing files");
+                    }
+                    writeInFile("hir.txt",cg.printHIR(c.getHir(),""));
+                    writeInFile("symbolTable.txt",cg.printSymbolTable(c.getTables()));
+                    writeInFile("Main.txt",cg.printSymbolTable(c.getTables()));
+                });
             }
 
             private void writeInFile(final String filename, final String code)
@@ -130,10 +251,9 @@ public class Interface
                                + "  * operações aritméticas;\n"
                                + "  * ciclos e condições;\n"
                                + " \n\n"
-                               + "Hint (limitações do JavaScript) : \n\n"
-                               + "Aquando a chamada de funções, se a função tiver argumentos, chame numa primeira função e declare a função a seguir. \n"
-                               + "Em caso de retorno de uma variável, declare primeiro a função e chame-a na função seguinte. \n"
-                               + "Em caso de retorno de uma variável, a variável não deve ter argumentos.\n\n\n"
+                               + "Hint : \n\n"
+                               + "As funções podem ser declaradas e chamadas por qualquer ordem, incluindo funções recursivas. \n"
+                               + "Os tipos dos argumentos e dos retornos são inferidos a partir das chamadas e dos returns de cada função.\n\n\n"
                                + "Trabalho realizado por : \n\n\n"
                                + "Catarina Ramos, Inês Gomes, Mário Fernandes\nCompiladores\n2016/2017\n\n\n");
                 info.setFont(new Font("Arial", Font.LAYOUT_LEFT_TO_RIGHT, 12));
@@ -145,6 +265,21 @@ public class Interface
         });
     }
 
+    /**
+     * Starts a conversion of the code in the text area, on the background thread, and cancels the one before.
+     */
+    private void convert()
+    {
+        if(worker != null)
+            worker.cancel(false);
+
+        progressBar.setMaximum(Metrics.Stage.values().length);
+        progressBar.setValue(0);
+        progressBar.setString("converting");
+        worker = new ConversionWorker(textAreaJSCode.getText());
+        background.execute(worker);
+    }
+
     private static void createUIComponents()
     {
 
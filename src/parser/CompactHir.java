@@ -0,0 +1,395 @@
+package parser;
+
+import cli.Resources.DataType;
+import cli.Resources.JSONType;
+import semantic.Exceptions;
+
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * HIR stored as arrays instead of one object per node : node i has the kind kinds[i], the specification
+ * pool.get(specs[i]), the descriptor refs[i] and the children children[first[i]] .. children[first[i] + counts[i] - 1].
+ * Nodes are numbered in preorder, so a traversal reads the arrays forwards.
+ *
+ * specs[i] is -1 for no specification and KEYWORD_BASE - ordinal for the Keyword of a load or store : a literal
+ * with the same characters gets an index in the pool instead.
+ *
+ * refs[i] is an index in descriptors, NO_REFERENCE, or the DataType of a literal encoded as LITERAL_BASE - ordinal :
+ * literals don't need a Descriptor of their own. The descriptors of the Symbol Tables are kept (same objects), so
+ * TypeInference still sees the types it gives to a node in the tables.
+ *
+ * getRoot() returns a Node view of the HIR : TypeInference and CodeGenerator run on it like on the object HIR.
+ * The tree itself can't change (no addAdj), only the specifications and references of its nodes.
+ *
+ * System property js2java.hir = compact makes BatchCompiler use it.
+ */
+public class CompactHir
+{
+    final public static String HIR_PROPERTY = "js2java.hir";
+
+    final private static int NO_REFERENCE = -1;
+    final private static int LITERAL_BASE = -2;
+    final private static int KEYWORD_BASE = -2;
+    final private static JSONType[] KINDS = JSONType.values();
+    final private static DataType[] TYPES = DataType.values();
+    final private static Keyword[] KEYWORDS = Keyword.values();
+
+    private final byte[] kinds;
+    private final int[] specs;
+    private final int[] refs;
+    private final int[] first;
+    private final int[] counts;
+    private final int[] children;
+    private final StringPool pool = new StringPool();
+
+    //descriptors of the source HIR, then the ones set by setReference (one slot per node, reused)
+    private volatile Descriptor[] descriptors;
+    private int descriptorCount = 0;
+    private final int sharedDescriptors;
+    private int[] freeSlots = new int[8];
+    private int freeCount = 0;
+
+    public static boolean isEnabled() {
+        return "compact".equalsIgnoreCase(System.getProperty(HIR_PROPERTY));
+    }
+
+    /**
+     * Copy of the object HIR under root ; root and its nodes can be dropped afterwards.
+     */
+    public static CompactHir of(Node root) {
+        return new CompactHir(root, count(root));
+    }
+
+    private CompactHir(Node root, int size)
+    {
+        kinds = new byte[size];
+        specs = new int[size];
+        refs = new int[size];
+        first = new int[size];
+        counts = new int[size];
+        children = new int[Math.max(size - 1, 0)];
+
+        IdentityHashMap<Descriptor, Integer> indexes = new IdentityHashMap<>();
+        ArrayList<Descriptor> shared = new ArrayList<>();
+
+        //preorder with an explicit stack : each entry is a node and the slot of children that receives its index
+        ArrayDeque<Node> nodes = new ArrayDeque<>();
+        ArrayDeque<Integer> slots = new ArrayDeque<>();
+        nodes.push(root);
+        slots.push(-1);
+        int next = 0, childrenSize = 0;
+
+        while(!nodes.isEmpty())
+        {
+            Node n = nodes.pop();
+            int slot = slots.pop();
+            int i = next++;
+            if(slot >= 0)
+                children[slot] = i;
+
+            kinds[i] = (byte) n.getType().ordinal();
+            Keyword keyword = n.getKeyword();
+            specs[i] = keyword != null ? keyword(keyword) : specification(n.getSpecification());
+
+            Descriptor d = n.getReference();
+            if(d == null)
+                refs[i] = NO_REFERENCE;
+            else if(n.getType() == JSONType.LITERAL)
+                refs[i] = LITERAL_BASE - d.getType().ordinal();
+            else {
+                Integer index = indexes.get(d);
+                if(index == null) {
+                    index = shared.size();
+                    shared.add(d);
+                    indexes.put(d, index);
+                }
+                refs[i] = index;
+            }
+
+            List<Node> adj = n.getAdj();
+            first[i] = childrenSize;
+            counts[i] = adj.size();
+            childrenSize += adj.size();
+
+            //pushed backwards so the first child is numbered first
+            for(int c = adj.size() - 1; c >= 0; c--) {
+                nodes.push(adj.get(c));
+                slots.push(first[i] + c);
+            }
+        }
+
+        sharedDescriptors = shared.size();
+        descriptorCount = shared.size();
+        descriptors = shared.toArray(new Descriptor[Math.max(shared.size(), 8)]);
+    }
+
+    private int specification(String s) {
+        return pool.intern(s);
+    }
+
+    private static int keyword(Keyword k) {
+        return KEYWORD_BASE - k.ordinal();
+    }
+
+    private static int count(Node root)
+    {
+        int size = 0;
+        ArrayDeque<Node> stack = new ArrayDeque<>();
+        stack.push(root);
+        while(!stack.isEmpty()) {
+            size++;
+            for(Node n : stack.pop().getAdj())
+                stack.push(n);
+        }
+        return size;
+    }
+
+    public Node getRoot() {
+        return new View(0);
+    }
+
+    public int size() {
+        return kinds.length;
+    }
+
+    public JSONType getType(int node) {
+        return KINDS[kinds[node]];
+    }
+
+    public String getSpecification(int node)
+    {
+        int spec = specs[node];
+        return spec <= KEYWORD_BASE ? KEYWORDS[KEYWORD_BASE - spec].text() : pool.get(spec);
+    }
+
+    public int getChildCount(int node) {
+        return counts[node];
+    }
+
+    public int getChild(int node, int index) {
+        return children[first[node] + index];
+    }
+
+    public boolean hasReference(int node) {
+        return refs[node] != NO_REFERENCE;
+    }
+
+    /**
+     * Type of the descriptor of node, without creating a Descriptor for literals.
+     */
+    public DataType getDescriptorType(int node)
+    {
+        int ref = refs[node];
+        if(ref == NO_REFERENCE)
+            throw new NullPointerException("Node without descriptor");
+        if(ref <= LITERAL_BASE)
+            return TYPES[LITERAL_BASE - ref];
+        return descriptors[ref].getType();
+    }
+
+    public Descriptor getReference(int node)
+    {
+        int ref = refs[node];
+        if(ref == NO_REFERENCE)
+            return null;
+        if(ref <= LITERAL_BASE)
+            return new Descriptor(null, TYPES[LITERAL_BASE - ref]);
+        return descriptors[ref];
+    }
+
+    /**
+     * Bytes of the arrays (and of the specification strings), without the shared descriptors.
+     */
+    public long footprint()
+    {
+        long bytes = kinds.length + 4L * (specs.length + refs.length + first.length + counts.length + children.length);
+        for(int i = 0; i < pool.size(); i++)
+            bytes += 40 + 2L * pool.get(i).length();
+        return bytes;
+    }
+
+    private synchronized void setReference(int node, Descriptor d)
+    {
+        int ref = refs[node];
+        boolean ownSlot = ref >= sharedDescriptors;
+
+        if(d == null) {
+            if(ownSlot) {
+                descriptors[ref] = null;
+                freeSlot(ref);
+            }
+            refs[node] = NO_REFERENCE;
+            return;
+        }
+
+        if(!ownSlot)
+            ref = allocateSlot();
+        descriptors[ref] = d;
+        refs[node] = ref;
+    }
+
+    private int allocateSlot()
+    {
+        if(freeCount > 0)
+            return freeSlots[--freeCount];
+
+        if(descriptorCount == descriptors.length) {
+            Descriptor[] grown = new Descriptor[descriptors.length * 2];
+            System.arraycopy(descriptors, 0, grown, 0, descriptorCount);
+            descriptors = grown;
+        }
+        return descriptorCount++;
+    }
+
+    private void freeSlot(int slot)
+    {
+        if(freeCount == freeSlots.length) {
+            int[] grown = new int[freeSlots.length * 2];
+            System.arraycopy(freeSlots, 0, grown, 0, freeCount);
+            freeSlots = grown;
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+    /**
+     * Node of the compact HIR : a view of one index, with no state of its own. Two views of the same index
+     * are the same node.
+     */
+    private class View extends Node
+    {
+        private final int index;
+
+        View(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public JSONType getType() {
+            return CompactHir.this.getType(index);
+        }
+
+        @Override
+        public void setType(JSONType type) {
+            kinds[index] = (byte) type.ordinal();
+        }
+
+        @Override
+        public String getSpecification() {
+            return CompactHir.this.getSpecification(index);
+        }
+
+        @Override
+        public void setSpecification(String specification) {
+            synchronized (pool) {
+                specs[index] = specification(specification);
+            }
+        }
+
+        @Override
+        public Keyword getKeyword() {
+            int spec = specs[index];
+            return spec <= KEYWORD_BASE ? KEYWORDS[KEYWORD_BASE - spec] : null;
+        }
+
+        @Override
+        public void setKeyword(Keyword keyword) {
+            if(keyword == null)
+                setSpecification(null);
+            else
+                specs[index] = keyword(keyword);
+        }
+
+        @Override
+        public Descriptor getReference() {
+            return CompactHir.this.getReference(index);
+        }
+
+        @Override
+        public void setReference(Descriptor reference) {
+            CompactHir.this.setReference(index, reference);
+        }
+
+        @Override
+        public List<Node> getAdj() {
+            return new Children(index);
+        }
+
+        @Override
+        public void setAdj(ArrayList<Node> adj) {
+            throw new UnsupportedOperationException("The compact HIR can't change its children");
+        }
+
+        @Override
+        public void addAdj(Node node) {
+            throw new UnsupportedOperationException("The compact HIR can't change its children");
+        }
+
+        @Override
+        public void setDescriptorType(DataType descriptorType) throws Exceptions.TypeMismatchException
+        {
+            int ref = refs[index];
+            if(ref == NO_REFERENCE)
+                throw new NullPointerException("Node without descriptor");
+            if(ref > LITERAL_BASE) {
+                Descriptor d = descriptors[ref];
+                if (d.getType() == DataType.NOTASSIGNED || d.getType() == descriptorType)
+                    d.setType(descriptorType);
+                else
+                    throw new Exceptions.TypeMismatchException(d.getName());
+                return;
+            }
+
+            DataType type = TYPES[LITERAL_BASE - ref];
+            if(type == DataType.NOTASSIGNED || type == descriptorType)
+                refs[index] = LITERAL_BASE - descriptorType.ordinal();
+            else
+                throw new Exceptions.TypeMismatchException(getReference().getName());
+        }
+
+        @Override
+        public DataType getDescriptorType() {
+            return CompactHir.this.getDescriptorType(index);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof View && ((View) o).index == index && ((View) o).hir() == CompactHir.this;
+        }
+
+        @Override
+        public int hashCode() {
+            return index;
+        }
+
+        private CompactHir hir() {
+            return CompactHir.this;
+        }
+    }
+
+    private class Children extends AbstractList<Node> implements RandomAccess
+    {
+        private final int parent;
+
+        Children(int parent) {
+            this.parent = parent;
+        }
+
+        @Override
+        public Node get(int i)
+        {
+            if(i < 0 || i >= counts[parent])
+                throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + counts[parent]);
+            return new View(children[first[parent] + i]);
+        }
+
+        @Override
+        public int size() {
+            return counts[parent];
+        }
+    }
+}
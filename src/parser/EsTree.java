@@ -0,0 +1,89 @@
+package parser;
+
+import java.util.HashMap;
+
+/**
+ * ESTree names read by the Parser, looked up once in a hash table instead of compared one by one.
+ */
+public class EsTree
+{
+    /**
+     * Values of the "type" property that create or change HIR nodes.
+     */
+    public enum Type {
+        FUNCTION_DECLARATION("FunctionDeclaration"),
+        CALL_EXPRESSION("CallExpression"),
+        RETURN_STATEMENT("ReturnStatement"),
+        VARIABLE_DECLARATOR("VariableDeclarator"),
+        ARRAY_EXPRESSION("ArrayExpression"),
+        ASSIGNMENT_EXPRESSION("AssignmentExpression"),
+        MEMBER_EXPRESSION("MemberExpression"),
+        IF_STATEMENT("IfStatement"),
+        WHILE_STATEMENT("WhileStatement"),
+        DO_WHILE_STATEMENT("DoWhileStatement"),
+        FOR_STATEMENT("ForStatement"),
+        BINARY_EXPRESSION("BinaryExpression"),
+        LOGICAL_EXPRESSION("LogicalExpression"),
+        UNARY_EXPRESSION("UnaryExpression"),
+        UPDATE_EXPRESSION("UpdateExpression"),
+        LITERAL("Literal"),
+        IDENTIFIER("Identifier");
+
+        private static final HashMap<String, Type> byName = new HashMap<>();
+        static {
+            for(Type t : values())
+                byName.put(t.name, t);
+        }
+
+        private final String name;
+
+        Type(String name) {
+            this.name = name;
+        }
+
+        /**
+         * @return the type with that ESTree name, or null if the Parser ignores it
+         */
+        public static Type of(String name) {
+            return byName.get(name);
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    /**
+     * Primitive properties of ESTree nodes used by the Parser.
+     */
+    public enum Property {
+        TYPE("type"),
+        NAME("name"),
+        OPERATOR("operator"),
+        VALUE("value"),
+        RAW("raw");
+
+        private static final HashMap<String, Property> byName = new HashMap<>();
+        static {
+            for(Property p : values())
+                byName.put(p.name, p);
+        }
+
+        private final String name;
+
+        Property(String name) {
+            this.name = name;
+        }
+
+        /**
+         * @return the property with that key, or null if the Parser ignores it
+         */
+        public static Property of(String name) {
+            return byName.get(name);
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package parser;
+
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Symbol Tables of a module indexed by function name.
+ */
+public class FunctionRegistry
+{
+    private HashMap<String, SymbolTable> functions = new HashMap<>();
+
+    public FunctionRegistry() {}
+
+    /**
+     * Registry of already named tables. When two tables have the same name, the first one is kept.
+     */
+    public FunctionRegistry(List<SymbolTable> tables)
+    {
+        for(SymbolTable st : tables)
+            functions.putIfAbsent(st.getFunctionName(), st);
+    }
+
+    /**
+     * @return false if there is already a function with the name of st
+     */
+    public boolean register(SymbolTable st)
+    {
+        return functions.putIfAbsent(st.getFunctionName(), st) == null;
+    }
+
+    public boolean contains(String name) {
+        return functions.containsKey(name);
+    }
+
+    /**
+     * @return the Symbol Table of the function, or null if it does not exist
+     */
+    public SymbolTable get(String name) {
+        return functions.get(name);
+    }
+
+    public int size() {
+        return functions.size();
+    }
+}
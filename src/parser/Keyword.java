@@ -0,0 +1,20 @@
+package parser;
+
+/**
+ * Role the Parser gives to loads and stores, kept on the node (Node.getKeyword) : text() is only its specification,
+ * so a literal or a function called "store" is not one.
+ */
+public enum Keyword
+{
+    STORE("store"), LOAD("load"), STOREARRAY("storearray"), LOADARRAY("loadarray");
+
+    private final String text;
+
+    Keyword(String text) {
+        this.text = text;
+    }
+
+    public String text() {
+        return text;
+    }
+}
@@ -5,13 +5,18 @@ import cli.Resources.JSONType;
 import semantic.Exceptions;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 public class Node 
 {
 	private JSONType type;
 	private String specification;
+	//role of a load or store, null for the other nodes
+	private Keyword keyword;
 	private Descriptor reference;
-	private ArrayList<Node> adj = new ArrayList<>();
+	//created on the first child, leaves don't have one
+	private ArrayList<Node> adj = null;
 	
 	public Node(JSONType type)
 	{
@@ -23,6 +28,8 @@ public class Node
 	public Node() {}
 
 	public void addAdj(Node node) {
+		if(adj == null)
+			adj = new ArrayList<>();
 		adj.add(node);
 	}
 
@@ -40,6 +47,19 @@ public class Node
 
 	public void setSpecification(String specification) {
 		this.specification = specification;
+		this.keyword = null;
+	}
+
+	public Keyword getKeyword() {
+		return keyword;
+	}
+
+	/**
+	 * Makes the node a load or a store : its specification becomes the text of the keyword.
+	 */
+	public void setKeyword(Keyword keyword) {
+		this.keyword = keyword;
+		this.specification = keyword == null ? null : keyword.text();
 	}
 
 	public Descriptor getReference() {
@@ -50,7 +70,9 @@ public class Node
 		this.reference = reference;
 	}
 
-	public ArrayList<Node> getAdj() {
+	public List<Node> getAdj() {
+		if(adj == null)
+			return Collections.emptyList();
 		return adj;
 	}
 
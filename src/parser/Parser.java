@@ -2,26 +2,59 @@ package parser;
 
 import cli.Resources;
 import cli.Resources.JSONType;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import cli.Trace;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.internal.LazilyParsedNumber;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import semantic.Diagnostic;
+import semantic.Diagnostics;
 import semantic.Exceptions;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Set;
-import java.util.logging.Logger;
 
 public class Parser
 {
     private ArrayList<SymbolTable> tables = new ArrayList<>();
+    private FunctionRegistry functions = new FunctionRegistry();
     private Node hir;
     private JsonObject root;
-    private String errorMessage;
+    private JsonReader reader;
+    //errors of the json, the parser goes on after them
+    private final Diagnostics diagnostics = new Diagnostics();
+    //the json couldn't be read to the end : the HIR stops in the middle of a node
+    private boolean truncated = false;
+    //objects of the json path being read, for the path of a diagnostic
+    private ArrayDeque<Frame> frames;
+    //names, operators and literal texts of this compilation : equal ones share one instance
+    private final StringPool atoms = new StringPool();
+
+    final private static Charset CHARSET = Charset.forName(Resources.DEFAULT_CHAR_SET);
+    //files from this size on are memory-mapped by read
+    final private static long MAP_THRESHOLD = 1 << 20;
+
+    //operators TypeInference and CodeGenerator compare with, so their equals succeeds on identity
+    final private static String[] OPERATORS = { "+", "-", "*", "/", "%", "!", "++", "--", "=", "+=", "-=", "*=", "/=",
+            "==", "!=", "===", "!==", "<", ">", "<=", ">=", "&&", "||" };
+
+    {
+        for(String op : OPERATORS)
+            atoms.intern(op);
+    }
 
     public Parser(String jsonCode)
     {
@@ -29,340 +62,648 @@ public class Parser
         //jsonCode = read(json);
 
         //Gson gson = new Gson();
-        Gson gson = new GsonBuilder()
-                      .disableHtmlEscaping()
-                      .setLenient()
-                      .create();
         //gson.setCharacterEncoding("UTF8");
-        JsonElement jelement = gson.fromJson (jsonCode, JsonElement.class);
+        this(readJson(jsonCode));
+    }
 
-        root = jelement.getAsJsonObject();
+    /**
+     * Parser of an ESTree json already read, e.g. a Program of only some of the statements of another one.
+     */
+    public Parser(JsonObject root)
+    {
+        this.root = root;
         setHir(new Node(JSONType.START));
-        errorMessage = null;
     }
 
-    public void run()
+    /**
+     * Gson tree of a json object, read without recursion : Gson's own tree adapter overflows the stack on deep json.
+     */
+    public static JsonObject readJson(String jsonCode)
     {
+        JsonElement jelement;
         try {
-            analyzeBody(root, getHir());
+            JsonReader jsonReader = new JsonReader(new StringReader(jsonCode));
+            jsonReader.setLenient(true);
+            jelement = readTree(jsonReader);
+            if(jsonReader.peek() != JsonToken.END_DOCUMENT)
+                throw new JsonSyntaxException("JSON document was not fully consumed.");
         }
-        catch (Exceptions.AssignmentException e) {
-            e.printStackTrace();
-            errorMessage = e.getMessage();
+        catch (IOException e) {
+            throw new JsonSyntaxException(e);
         }
-        catch (Exceptions.TypeMismatchException e) {
-            e.printStackTrace();
-            errorMessage = e.getMessage();
+        return jelement.getAsJsonObject();
+    }
+
+    /**
+     * Streaming mode : the HIR is built while the json is read, so only the current path of the json
+     * is in memory instead of the whole tree. Builds the same HIR and Symbol Tables as Parser(String).
+     * @param jsonReader ESTree json, read by run()
+     */
+    public Parser(Reader jsonReader)
+    {
+        reader = new JsonReader(jsonReader);
+        reader.setLenient(true);
+        setHir(new Node(JSONType.START));
+    }
+
+    public void run()
+    {
+        try {
+            if(reader != null)
+                analyzeBody(reader, getHir());
+            else
+                analyzeBody(root, getHir());
         }
-        catch (Exceptions.FunctionNameException e) {
-            e.printStackTrace();
-            errorMessage = e.getMessage();
+        catch (IOException e) {
+            diagnostics.report(Diagnostic.Kind.SYNTAX, null, null, null, e.getMessage());
+            truncated = true;
         }
+        frames = null;
     }
 
     /**
-     * Given a File object, returns a String with the contents of the file.
+     * Given a file, returns a String with its contents (UTF-8).
      *
      * <p>
-     * If an error occurs (ex.: the File argument does not represent a file) returns null and logs the cause.
+     * The file is read in bulk through its channel (memory-mapped from MAP_THRESHOLD bytes on) instead of
+     * one char at a time through a BufferedReader : big ESTree json is read at disk speed.
      *
      * @param file
-     *            a File object representing a file.
+     *            path of the file.
      * @return a String with the contents of the file.
      */
-    private String read(File file) {
-        // Check null argument. If null, it would raise and exception and stop
-        // the program when used to create the File object.
-        if (file == null) {
-            Logger.getLogger("info").info("Input 'file' is null.");
-            return null;
+    public static String read(Path file) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE - 8)
+                throw new IOException("File too large : " + file);
+
+            //one copy into a byte[], then String's own decoder (much faster than a CharsetDecoder on ascii)
+            byte[] bytes = new byte[(int) size];
+            int length;
+            if (size >= MAP_THRESHOLD) {
+                channel.map(FileChannel.MapMode.READ_ONLY, 0, size).get(bytes);
+                length = bytes.length;
+            }
+            else {
+                ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                while (buffer.hasRemaining() && channel.read(buffer) >= 0);
+                length = buffer.position();
+            }
+            return new String(bytes, 0, length, CHARSET);
         }
+    }
 
-        StringBuilder stringBuilder = new StringBuilder();
+    /**
+     * Json object being read by analyzeBody : its entries, the node they go to and the array it is in, if any.
+     * The objects of the current path are kept on a stack instead of the thread stack, so the depth of the json
+     * is only limited by the heap.
+     */
+    private static class Frame
+    {
+        //tree mode : entries of the object and elements of the array being read
+        Iterator<Entry<String, JsonElement>> entries;
+        Iterator<JsonElement> elements;
+        //key of the array being read, null when none
+        String arrayKey;
 
-        // Try to read the contents of the file into the StringBuilder
+        final Node node;
+        Node newNode = null;
+        Node currentNode;
+        //params and args are added to the node of their call or function once they are read
+        Node owner = null;
 
-        try (final BufferedReader bufferedReader =
-               new BufferedReader(new InputStreamReader(new FileInputStream(file), Resources.DEFAULT_CHAR_SET))) {
+        Frame(Node node) {
+            this.node = node;
+            this.currentNode = node;
+        }
+    }
 
-            // Read first character. It can't be cast to "char", otherwise the
-            // -1 will be converted in a character.
-            // First test for -1, then cast.
-            int intChar = bufferedReader.read();
-            while (intChar != -1) {
-                char character = (char) intChar;
-                stringBuilder.append(character);
-                intChar = bufferedReader.read();
-            }
+    private static void begin(Node node)
+    {
+        if(Trace.isEnabled(Trace.Level.TRACE))
+            Trace.log(Trace.Level.TRACE, " --- begin --- \n\nCurrent Node : "+node.getType());
+    }
 
-        } catch (FileNotFoundException ex) {
-            Logger.getLogger("info").info("FileNotFoundException: " + ex.getMessage());
-            return null;
+    private static void end(Frame frame)
+    {
+        if(frame.owner != null)
+            frame.owner.addAdj(frame.node);
+        if(Trace.isEnabled(Trace.Level.TRACE))
+            Trace.log(Trace.Level.TRACE, " --- end --- ");
+    }
 
-        } catch (IOException ex) {
-            Logger.getLogger("info").info("IOException: " + ex.getMessage());
-            return null;
+    /**
+     * Node that an element of the array key reads into : a new PARAM or ARG that goes to newNode, or the current node.
+     */
+    private static Frame element(String key, Frame parent)
+    {
+        Frame f;
+        // special case where PARAM originaly belongs to START node but we need them at FUNCTION
+        if(key.equals("params")) {
+            f = new Frame(new Node(JSONType.PARAM));
+            f.owner = parent.newNode;
         }
-
-        return stringBuilder.toString();
+        // special case where ARG originaly belongs to FUNCTION node but we need them at CALLEE
+        else if(key.equals("arguments")) {
+            f = new Frame(new Node(JSONType.ARG));
+            f.owner = parent.newNode;
+        }
+        else
+            f = new Frame(parent.currentNode);
+        return f;
     }
 
     private void analyzeBody(JsonObject jobject, Node node)
-      throws Exceptions.AssignmentException, Exceptions.TypeMismatchException, Exceptions.FunctionNameException
     {
-        System.out.println(" --- begin --- \n\nCurrent Node : "+node.getType());
+        ArrayDeque<Frame> stack = frames = new ArrayDeque<>();
+        Frame top = new Frame(node);
+        top.entries = jobject.entrySet().iterator();
+        begin(node);
+        stack.push(top);
 
-        String key;
-        String classType;
-        String value;
-        Node newNode = null;
-        Node currentNode = node;
+        while(!stack.isEmpty())
+        {
+            Frame f = stack.peek();
 
-        Set<Map.Entry<String,JsonElement>> obj = jobject.entrySet();
-        Iterator<Entry<String, JsonElement>> it = obj.iterator();
+            if(f.elements != null)
+            {
+                if(f.elements.hasNext()) {
+                    JsonObject elem = f.elements.next().getAsJsonObject();
+                    Frame child = element(f.arrayKey, f);
+                    child.entries = elem.entrySet().iterator();
+                    begin(child.node);
+                    stack.push(child);
+                    continue;
+                }
+                f.elements = null;
+                f.arrayKey = null;
+            }
 
-        while(it.hasNext())
+            if(!f.entries.hasNext()) {
+                stack.pop();
+                end(f);
+                continue;
+            }
+
+            Entry<String, JsonElement> entry = f.entries.next();
+            JsonElement element = entry.getValue();
+            String key = entry.getKey();
+
+            if(f.newNode != null)
+                f.currentNode = f.newNode;
+
+            //containers are never turned into strings, only primitives are read
+            if(element.isJsonArray())
+            {
+                if(Trace.isEnabled(Trace.Level.TRACE))
+                    Trace.log(Trace.Level.TRACE, "\nARRAY: \n" + key);
+
+                f.arrayKey = key;
+                f.elements = element.getAsJsonArray().iterator();
+            }
+            else if(element.isJsonPrimitive())
+            {
+                JsonPrimitive primitive = element.getAsJsonPrimitive();
+                String value = primitive.isString() ? primitiveText(primitive.getAsString()) : primitive.getAsString();
+
+                if(Trace.isEnabled(Trace.Level.TRACE))
+                    Trace.log(Trace.Level.TRACE, "\nPRIMITIVE: \n" +  key + " = " + value);
+
+                Node created = analyzePrimitive(key, value, f.currentNode);
+                if(created != null)
+                    f.newNode = created;
+            }
+            else if(element.isJsonObject())
+            {
+                if(Trace.isEnabled(Trace.Level.TRACE))
+                    Trace.log(Trace.Level.TRACE, "\nOBJECT: \n" +  key);
+
+                //special case where alternate object needs a new node to handle the else possibility
+                Node target = key.equals("alternate") ? createNewNode(f.currentNode, JSONType.ELSE, null, null) : f.currentNode;
+                Frame child = new Frame(target);
+                child.entries = element.getAsJsonObject().entrySet().iterator();
+                begin(target);
+                stack.push(child);
+            }
+            else {
+                if(Trace.isEnabled(Trace.Level.TRACE))
+                    Trace.log(Trace.Level.TRACE, "OTHER");
+            }
+        }
+    }
+
+    private void analyzeBody(JsonReader reader, Node node) throws IOException
+    {
+        ArrayDeque<Frame> stack = frames = new ArrayDeque<>();
+        begin(node);
+        reader.beginObject();
+        stack.push(new Frame(node));
+
+        while(!stack.isEmpty())
         {
-            Entry<String, JsonElement> entry = it.next();
+            Frame f = stack.peek();
+
+            if(f.arrayKey != null)
+            {
+                if(reader.hasNext()) {
+                    Frame child = element(f.arrayKey, f);
+                    begin(child.node);
+                    reader.beginObject();
+                    stack.push(child);
+                    continue;
+                }
+                reader.endArray();
+                f.arrayKey = null;
+            }
 
-            classType = entry.getValue().getClass().getSimpleName();
-            key = entry.getKey().toString();
-            value = entry.getValue().toString().replaceAll("\"", "");
+            if(!reader.hasNext()) {
+                reader.endObject();
+                stack.pop();
+                end(f);
+                continue;
+            }
 
-            if(newNode != null)
-                currentNode = newNode;
+            String key = reader.nextName();
 
-            JSONType nodeType = currentNode.getType();
-            String nodeSpecification = currentNode.getSpecification();
-            Descriptor nodeReference = currentNode.getReference();
+            if(f.newNode != null)
+                f.currentNode = f.newNode;
 
-            switch (classType)
+            switch (reader.peek())
             {
-                case "JsonArray":
-                    System.out.println("\nARRAY: \n" + key + " = " + value);
-
-                    for(JsonElement elem : entry.getValue().getAsJsonArray())
-                    {
-                        // special case where PARAM originaly belongs to START node but we need them at FUNCTION
-                        if(key.equals("params"))
-                        {
-                            Node param = new Node(JSONType.PARAM);
-                            analyzeBody(elem.getAsJsonObject(),param);
-                            newNode.addAdj(param);
-                        }
-                        // special case where ARG originaly belongs to FUNCTION node but we need them at CALLEE
-                        else if(key.equals("arguments"))
-                        {
-                            Node arg = new Node(JSONType.ARG);
-                            analyzeBody(elem.getAsJsonObject(),arg);
-                            newNode.addAdj(arg);
-                        }
-                        else analyzeBody(elem.getAsJsonObject(),currentNode);
-                    }
+                case BEGIN_ARRAY:
+                    if(Trace.isEnabled(Trace.Level.TRACE))
+                        Trace.log(Trace.Level.TRACE, "\nARRAY: \n" + key);
 
-                    break;
-                case "JsonPrimitive":
-                    System.out.println("\nPRIMITIVE: \n" +  key + " = " + value);
-
-                    //function : type(FUNCTION), specification(function name), reference(NULL)
-                    if(value.equals("FunctionDeclaration"))
-                    {
-                        //create new Node
-                        newNode = createNewNode(currentNode, JSONType.FUNCTION, null, null);
-
-                        //create one symbol table per function
-                        getTables().add(new SymbolTable());
-                    }
-                    else if(key.equals("name") && nodeType == JSONType.FUNCTION)
-                    {
-                        //set function name at node and at the symbolTable
-                        currentNode.setSpecification(value);
-                        addNameToLastST(value);
-                    }
-                    else if(value.equals("CallExpression"))
-                    {
-                        //create new Node
-                        newNode = createNewNode(currentNode, JSONType.CALLEE, null, null);
-                    }
-                    else if(key.equals("name") && nodeType == JSONType.CALLEE)
-                    {
-                        //set function name at node and at the symbolTable
-                        currentNode.setSpecification(value);
-                    }
-
-                    //return : type(RETURN), specification(NULL), reference(var name and type)
-                    else if(value.equals("ReturnStatement"))
-                    {
-                        //create new Node
-                        newNode = createNewNode(currentNode, JSONType.RETURN, null, null);
-                    }
-                    else if(key.equals("name") && nodeType == JSONType.RETURN && nodeReference == null)
-                    {
-                        Descriptor d = setReference(currentNode,value);
-                        addReturnToLastST(d.getType());
-                    }
-
-                    //parameter : type(PARAM), specification(NULL), reference(var name and DataType)
-                    else if(key.equals("name") && nodeType == JSONType.PARAM && nodeReference == null)
-                    {
-                        //param descriptor starts with unknown dataType
-                        Descriptor d = new Descriptor(value);
-                        //add parameter to SymbolTable and set a reference to the descriptor at the HIR
-                        addParamToLastST(d);
-                        currentNode.setReference(d);
-                    }
-
-                    /*//argument : type(ARG), specification(NULL), reference(var name and DataType)
-                    else if(key.equals("name") && nodeType == JSONType.ARG && nodeReference == null)
-                    {
-                        //arg descriptor starts with unknown dataType
-                        Descriptor d = new Descriptor(value);
-                        currentNode.setReference(d);
-                    }*/
-
-                    //local variable : type(VARIABLEDECLARATION), specification(NULL), reference(var name and DataType)
-                    else if(value.equals("VariableDeclarator"))
-                    {
-                        //create new Node
-                        newNode = createNewNode(currentNode, JSONType.VARIABLEDECLARATION, "store", null);
-                    }
-
-                    else if(key.equals("name") && nodeType == JSONType.VARIABLEDECLARATION && nodeReference == null)
-                    {
-                        //create descriptor, add to node and to SymbolTable
-                        Descriptor d = new Descriptor(value);
-                        currentNode.setReference(d);
-                        addLocalToLastST(d);
-                    }
-
-                    else if(value.equals("ArrayExpression") && nodeType == JSONType.VARIABLEDECLARATION )
-                    {
-                        currentNode.setSpecification("storearray");
-                        newNode = createNewNode(currentNode, JSONType.ARRAYDECLARATION, "storearray", null);
-                    }
-                    //fill the array content
-                    else if(value.equals("ArrayExpression") && nodeType == JSONType.ARRAYDECLARATION)
-                    {
-                        newNode = createNewNode(currentNode, JSONType.ARRAYDECLARATION, "storearray", null);
-                    }
-
-                    //assignment : type(ASSIGNMENT), specification(=), reference(variable name and type)
-                    else if(value.equals("AssignmentExpression"))
-                    {
-                        newNode = createNewNode(currentNode, JSONType.ASSIGNMENT, "store", null);
-                    }
-                    //assignment of arrays (left side)
-                    else if(value.equals("MemberExpression") )
-                    {
-                        if(nodeType == JSONType.ASSIGNMENT)
-                        {
-                            currentNode.setSpecification("storearray");
-                        }
-                        //load of arrays
-                        newNode = createNewNode(currentNode, JSONType.ARRAYLOAD, "loadarray", null);
-                    }
-                    else if(value.equals("MemberExpression") && nodeType == JSONType.ARRAYLOAD)
-                    {
-                        newNode = createNewNode(currentNode, JSONType.ARRAYLOAD, "loadarray", null);
-                    }
-
-                    //if statement : type(IFSTATEMENT), specification(null), reference(null)
-                    else if(value.equals("IfStatement"))
-                    {
-                        newNode = createNewNode(currentNode, JSONType.IFSTATEMENT, null, null);
-                    }
-
-                    //while statement : type(WHILESTATEMENT), specification(null), reference(null)
-                    else if(value.equals("WhileStatement"))
-                    {
-                        newNode = createNewNode(currentNode, JSONType.WHILESTATEMENT, null, null);
-                    }
-
-                    //do while statement : type(DOWHILESTATEMENT), specification(null), reference(null)
-                    else if(value.equals("DoWhileStatement"))
-                    {
-                        newNode = createNewNode(currentNode, JSONType.DOWHILESTATEMENT, null, null);
-                    }
-
-                    //for statement : type(FORSTATEMENT), specification(null), reference(null)
-                    else if(value.equals("ForStatement"))
-                    {
-                        newNode = createNewNode(currentNode, JSONType.FORSTATEMENT, null, null);
-                    }
-
-                    //BinaryExpression : type(OPERATION), specification(operator), reference(NULL)
-                    else if(value.equals("BinaryExpression") || value.equals("LogicalExpression") || value.equals("UnaryExpression") || value.equals("UpdateExpression"))
-                    {
-                        newNode = createNewNode(currentNode, JSONType.OPERATION, null, null);
-                    }
-                    //add specification to OPERATION
-                    else if(key.equals("operator") && (nodeType == JSONType.OPERATION || nodeType == JSONType.ASSIGNMENT))
-                    {
-                        currentNode.setSpecification(value);
-                    }
-
-                    //literal : type(dataType), specification(data), specification(NULL)
-                    else if(value.equals("Literal"))
-                    {
-                        newNode = createNewNode(currentNode, JSONType.LITERAL, null, null);
-                    }
-                    else if(key.equals("value") && (nodeType == JSONType.LITERAL || nodeType == JSONType.RETURN || nodeType == JSONType.ARG))
-                    {
-                        Descriptor d = new Descriptor(null, Resources.DataType.NOTASSIGNED);
-                        currentNode.setReference(d);
-                        currentNode.setSpecification(value);
-                        setType(currentNode,value);
-                    }
-                    else if(key.equals("raw") && (nodeType == JSONType.LITERAL || nodeType == JSONType.RETURN || nodeType == JSONType.ARG))
-                    {
-                        confirmType(currentNode,value);
-                    }
-
-                    //when we need to load some descriptor, and don't want to store it ==> create IDENTIFIER node
-                    //special cases that have identifiers but we'll use them on a different way : FUNCTION, PARAM and RETURN
-                    //identifier : type(IDENTIFIER), specification(NULL), reference(variable name and type)
-                    else if(value.equals("Identifier") &&
-                              !(nodeType == JSONType.PARAM || nodeType == JSONType.FUNCTION ||
-                                  nodeType == JSONType.CALLEE))
-                    {
-
-                        if (!(nodeSpecification != null && ((nodeSpecification.equals("store") || nodeSpecification.equals("load")))
-                                && nodeReference == null) || nodeType == JSONType.WHILESTATEMENT || nodeType == JSONType.IFSTATEMENT ||
-                                nodeType == JSONType.RETURN || nodeType == JSONType.ARG) {
-                            newNode = createNewNode(currentNode, JSONType.IDENTIFIER, "load", null);
-                        }
-                    }
-
-                    //adding a descriptor to some load/store or arg node
-                    else if(key.equals("name") &&
-                              (nodeType == JSONType.ARG || nodeType == JSONType.ASSIGNMENT || (nodeSpecification != null && (nodeSpecification.equals("store") ||
-                                                                                            nodeSpecification.equals("load")))
-                              && nodeReference == null))
-                    {
-                        setReference(currentNode, value);
-                    }
+                    reader.beginArray();
+                    f.arrayKey = key;
 
                     break;
-                case "JsonObject":
-                    System.out.println("\nOBJECT: \n" +  key + " = " + value);
+                case BEGIN_OBJECT:
+                    if(Trace.isEnabled(Trace.Level.TRACE))
+                        Trace.log(Trace.Level.TRACE, "\nOBJECT: \n" + key);
 
                     //special case where alternate object needs a new node to handle the else possibility
-                    if(key.equals("alternate"))
-                    {
-                        Node elseNode = createNewNode(currentNode, JSONType.ELSE, null, null);
-                        analyzeBody(entry.getValue().getAsJsonObject(),elseNode);
-                    }
-                    else {
-                        analyzeBody(entry.getValue().getAsJsonObject(),currentNode);
-                    }
+                    Node target = key.equals("alternate") ? createNewNode(f.currentNode, JSONType.ELSE, null, null) : f.currentNode;
+                    begin(target);
+                    reader.beginObject();
+                    stack.push(new Frame(target));
 
                     break;
+                case NULL:
+                    reader.nextNull();
+                    if(Trace.isEnabled(Trace.Level.TRACE))
+                        Trace.log(Trace.Level.TRACE, "OTHER");
+                    break;
                 default:
-                    System.out.println("OTHER");
+                    String value = primitiveValue(reader);
+                    if(Trace.isEnabled(Trace.Level.TRACE))
+                        Trace.log(Trace.Level.TRACE, "\nPRIMITIVE: \n" +  key + " = " + value);
+
+                    Node created = analyzePrimitive(key, value, f.currentNode);
+                    if(created != null)
+                        f.newNode = created;
+
                     break;
             }
         }
-        System.out.println(" --- end --- ");
+    }
+
+    /**
+     * Json tree of the reader, like Gson's JsonElement adapter builds it but without recursion.
+     */
+    private static JsonElement readTree(JsonReader reader) throws IOException
+    {
+        //objects and arrays that are still open, innermost first
+        ArrayDeque<JsonElement> containers = new ArrayDeque<>();
+        JsonElement result = null;
+
+        do
+        {
+            String name = null;
+            if(!containers.isEmpty() && containers.peek().isJsonObject()) {
+                if(!reader.hasNext()) {
+                    reader.endObject();
+                    result = containers.pop();
+                    continue;
+                }
+                name = reader.nextName();
+            }
+            else if(!containers.isEmpty() && !reader.hasNext()) {
+                reader.endArray();
+                result = containers.pop();
+                continue;
+            }
+
+            JsonElement value;
+            switch (reader.peek())
+            {
+                case BEGIN_OBJECT:
+                    reader.beginObject();
+                    value = new JsonObject();
+                    break;
+                case BEGIN_ARRAY:
+                    reader.beginArray();
+                    value = new JsonArray();
+                    break;
+                case STRING:
+                    value = new JsonPrimitive(reader.nextString());
+                    break;
+                case NUMBER:
+                    value = new JsonPrimitive(new LazilyParsedNumber(reader.nextString()));
+                    break;
+                case BOOLEAN:
+                    value = new JsonPrimitive(reader.nextBoolean());
+                    break;
+                case NULL:
+                    reader.nextNull();
+                    value = JsonNull.INSTANCE;
+                    break;
+                default:
+                    throw new IllegalArgumentException();
+            }
+
+            if(!containers.isEmpty()) {
+                if(containers.peek().isJsonObject())
+                    containers.peek().getAsJsonObject().add(name, value);
+                else
+                    containers.peek().getAsJsonArray().add(value);
+            }
+
+            if(value.isJsonObject() || value.isJsonArray())
+                containers.push(value);
+            else
+                result = value;
+        }
+        while(!containers.isEmpty());
+
+        return result;
+    }
+
+    /**
+     * Reads a primitive with the same text the tree mode gets from it.
+     */
+    private static String primitiveValue(JsonReader reader) throws IOException
+    {
+        JsonToken token = reader.peek();
+
+        if(token == JsonToken.BOOLEAN)
+            return String.valueOf(reader.nextBoolean());
+        if(token == JsonToken.NUMBER)
+            return reader.nextString();
+        return primitiveText(reader.nextString());
+    }
+
+    /**
+     * Text of a json string as the HIR keeps it : its json form without the quotes.
+     * Only strings with characters that json escapes are different from the value itself.
+     */
+    static String primitiveText(String s)
+    {
+        for(int i = 0; i < s.length(); i++)
+        {
+            char c = s.charAt(i);
+            if(c == '"' || c == '\\' || c < 0x20 || c == '\u2028' || c == '\u2029')
+                return new JsonPrimitive(s).toString().replace("\"", "");
+        }
+        return s;
+    }
+
+    /**
+     * Handles a primitive entry of some json object : the handler registered for its property
+     * (and, for "type", its ESTree type) and the type of the current node, if any.
+     * An error is added to the diagnostics and the entry skipped, so one run finds all the errors of the json.
+     * @return the node created for the entry, that becomes the current node of the following entries; null if none
+     */
+    private Node analyzePrimitive(String key, String value, Node currentNode)
+    {
+        EsTree.Property property = EsTree.Property.of(key);
+        if(property == null)
+            return null;
+
+        Handler handler;
+        if(property == EsTree.Property.TYPE)
+        {
+            EsTree.Type esType = EsTree.Type.of(value);
+            if(esType == null)
+                return null;
+            handler = typeHandlers[esType.ordinal()][currentNode.getType().ordinal()];
+        }
+        else
+            handler = propertyHandlers[property.ordinal()][currentNode.getType().ordinal()];
+
+        if(handler == null)
+            return null;
+        try {
+            return handler.handle(this, currentNode, property == EsTree.Property.TYPE ? value : atoms.canonical(value));
+        }
+        catch (Exceptions.CompileException e) {
+            report(e, currentNode);
+            return null;
+        }
+    }
+
+    /**
+     * Adds e to the diagnostics, in the function being read and at the path of the frames to node.
+     */
+    private void report(Exceptions.CompileException e, Node node)
+    {
+        if(diagnostics.isFull()) {
+            diagnostics.report(e, null, null);
+            return;
+        }
+        ArrayList<Node> path = new ArrayList<>();
+        String function = null;
+        Iterator<Frame> it = frames.descendingIterator();
+        while(it.hasNext())
+        {
+            Node n = it.next().currentNode;
+            if(path.isEmpty() || path.get(path.size() - 1) != n)
+                path.add(n);
+        }
+        if(path.get(path.size() - 1) != node)
+            path.add(node);
+        for(Node n : path)
+            if(n.getType() == JSONType.FUNCTION)
+                function = n.getSpecification();
+        diagnostics.report(e, function, Diagnostics.path(path));
+    }
+
+    /**
+     * Action for a primitive entry.
+     */
+    private interface Handler
+    {
+        /**
+         * @return new node, that becomes the current node of the following entries; null if none
+         */
+        Node handle(Parser parser, Node currentNode, String value) throws Exceptions.CompileException;
+    }
+
+    //handlers indexed by [EsTree.Type][JSONType of the current node] and [EsTree.Property][JSONType of the current node]
+    private static final Handler[][] typeHandlers = new Handler[EsTree.Type.values().length][JSONType.values().length];
+    private static final Handler[][] propertyHandlers = new Handler[EsTree.Property.values().length][JSONType.values().length];
+
+    private static void on(EsTree.Type type, Handler handler) {
+        for(JSONType nodeType : JSONType.values())
+            typeHandlers[type.ordinal()][nodeType.ordinal()] = handler;
+    }
+
+    private static void on(EsTree.Type type, JSONType nodeType, Handler handler) {
+        typeHandlers[type.ordinal()][nodeType.ordinal()] = handler;
+    }
+
+    private static void on(EsTree.Property property, JSONType nodeType, Handler handler) {
+        propertyHandlers[property.ordinal()][nodeType.ordinal()] = handler;
+    }
+
+    static
+    {
+        //function : type(FUNCTION), specification(function name), reference(NULL)
+        on(EsTree.Type.FUNCTION_DECLARATION, (p, node, value) -> {
+            //create one symbol table per function
+            p.getTables().add(new SymbolTable());
+            return p.createNewNode(node, JSONType.FUNCTION, null, null);
+        });
+        on(EsTree.Property.NAME, JSONType.FUNCTION, (p, node, value) -> {
+            //set function name at node and at the symbolTable
+            node.setSpecification(value);
+            p.addNameToLastST(value);
+            return null;
+        });
+
+        //callee : type(CALLEE), specification(function name), reference(NULL)
+        on(EsTree.Type.CALL_EXPRESSION, (p, node, value) -> p.createNewNode(node, JSONType.CALLEE, null, null));
+        on(EsTree.Property.NAME, JSONType.CALLEE, (p, node, value) -> {
+            node.setSpecification(value);
+            return null;
+        });
+
+        //return : type(RETURN), specification(NULL), reference(var name and type)
+        on(EsTree.Type.RETURN_STATEMENT, (p, node, value) -> p.createNewNode(node, JSONType.RETURN, null, null));
+        on(EsTree.Property.NAME, JSONType.RETURN, (p, node, value) -> {
+            if(node.getReference() == null) {
+                Descriptor d = p.setReference(node, value);
+                p.addReturnToLastST(d.getType());
+            }
+            return null;
+        });
+
+        //parameter : type(PARAM), specification(NULL), reference(var name and DataType)
+        on(EsTree.Property.NAME, JSONType.PARAM, (p, node, value) -> {
+            if(node.getReference() == null) {
+                //param descriptor starts with unknown dataType
+                Descriptor d = new Descriptor(value);
+                //add parameter to SymbolTable and set a reference to the descriptor at the HIR
+                p.addParamToLastST(d);
+                node.setReference(d);
+            }
+            return null;
+        });
+
+        //local variable : type(VARIABLEDECLARATION), specification(store or storearray), reference(var name and DataType)
+        on(EsTree.Type.VARIABLE_DECLARATOR, (p, node, value) -> p.createNewNode(node, JSONType.VARIABLEDECLARATION, Keyword.STORE));
+        on(EsTree.Property.NAME, JSONType.VARIABLEDECLARATION, (p, node, value) -> {
+            if(node.getReference() == null) {
+                //create descriptor, add to node and to SymbolTable
+                Descriptor d = new Descriptor(value);
+                node.setReference(d);
+                p.addLocalToLastST(d);
+            }
+            return null;
+        });
+
+        on(EsTree.Type.ARRAY_EXPRESSION, JSONType.VARIABLEDECLARATION, (p, node, value) -> {
+            node.setKeyword(Keyword.STOREARRAY);
+            return p.createNewNode(node, JSONType.ARRAYDECLARATION, Keyword.STOREARRAY);
+        });
+        //fill the array content
+        on(EsTree.Type.ARRAY_EXPRESSION, JSONType.ARRAYDECLARATION,
+           (p, node, value) -> p.createNewNode(node, JSONType.ARRAYDECLARATION, Keyword.STOREARRAY));
+
+        //assignment : type(ASSIGNMENT), specification(operator), reference(variable name and type)
+        on(EsTree.Type.ASSIGNMENT_EXPRESSION, (p, node, value) -> p.createNewNode(node, JSONType.ASSIGNMENT, Keyword.STORE));
+        //load of arrays (and assignment of arrays, left side)
+        on(EsTree.Type.MEMBER_EXPRESSION, (p, node, value) -> {
+            if(node.getType() == JSONType.ASSIGNMENT)
+                node.setKeyword(Keyword.STOREARRAY);
+            return p.createNewNode(node, JSONType.ARRAYLOAD, Keyword.LOADARRAY);
+        });
+
+        //conditions and loops : type(IFSTATEMENT, ...), specification(null), reference(null)
+        on(EsTree.Type.IF_STATEMENT, (p, node, value) -> p.createNewNode(node, JSONType.IFSTATEMENT, null, null));
+        on(EsTree.Type.WHILE_STATEMENT, (p, node, value) -> p.createNewNode(node, JSONType.WHILESTATEMENT, null, null));
+        on(EsTree.Type.DO_WHILE_STATEMENT, (p, node, value) -> p.createNewNode(node, JSONType.DOWHILESTATEMENT, null, null));
+        on(EsTree.Type.FOR_STATEMENT, (p, node, value) -> p.createNewNode(node, JSONType.FORSTATEMENT, null, null));
+
+        //BinaryExpression : type(OPERATION), specification(operator), reference(NULL)
+        Handler operation = (p, node, value) -> p.createNewNode(node, JSONType.OPERATION, null, null);
+        on(EsTree.Type.BINARY_EXPRESSION, operation);
+        on(EsTree.Type.LOGICAL_EXPRESSION, operation);
+        on(EsTree.Type.UNARY_EXPRESSION, operation);
+        on(EsTree.Type.UPDATE_EXPRESSION, operation);
+        //add specification to OPERATION
+        Handler operator = (p, node, value) -> {
+            node.setSpecification(value);
+            return null;
+        };
+        on(EsTree.Property.OPERATOR, JSONType.OPERATION, operator);
+        on(EsTree.Property.OPERATOR, JSONType.ASSIGNMENT, operator);
+
+        //literal : type(LITERAL), specification(data), reference(descriptor with the dataType)
+        on(EsTree.Type.LITERAL, (p, node, value) -> p.createNewNode(node, JSONType.LITERAL, null, null));
+        Handler literalValue = (p, node, value) -> {
+            Descriptor d = new Descriptor(null, Resources.DataType.NOTASSIGNED);
+            node.setReference(d);
+            node.setSpecification(value);
+            p.setType(node, value);
+            return null;
+        };
+        Handler literalRaw = (p, node, value) -> {
+            p.confirmType(node, value);
+            return null;
+        };
+        for(JSONType nodeType : new JSONType[]{ JSONType.LITERAL, JSONType.RETURN, JSONType.ARG }) {
+            on(EsTree.Property.VALUE, nodeType, literalValue);
+            on(EsTree.Property.RAW, nodeType, literalRaw);
+        }
+
+        //when we need to load some descriptor, and don't want to store it ==> create IDENTIFIER node
+        //special cases that have identifiers but we'll use them on a different way : FUNCTION, PARAM and CALLEE
+        //identifier : type(IDENTIFIER), specification(load), reference(variable name and type)
+        on(EsTree.Type.IDENTIFIER, (p, node, value) -> {
+            JSONType nodeType = node.getType();
+            Keyword keyword = node.getKeyword();
+
+            if (!((keyword == Keyword.STORE || keyword == Keyword.LOAD)
+                    && node.getReference() == null) || nodeType == JSONType.WHILESTATEMENT || nodeType == JSONType.IFSTATEMENT ||
+                    nodeType == JSONType.RETURN || nodeType == JSONType.ARG) {
+                return p.createNewNode(node, JSONType.IDENTIFIER, Keyword.LOAD);
+            }
+            return null;
+        });
+        on(EsTree.Type.IDENTIFIER, JSONType.PARAM, null);
+        on(EsTree.Type.IDENTIFIER, JSONType.FUNCTION, null);
+        on(EsTree.Type.IDENTIFIER, JSONType.CALLEE, null);
+
+        //adding a descriptor to some load/store or arg node
+        for(JSONType nodeType : JSONType.values())
+        {
+            if(nodeType == JSONType.ARG || nodeType == JSONType.ASSIGNMENT)
+                on(EsTree.Property.NAME, nodeType, (p, node, value) -> {
+                    p.setReference(node, value);
+                    return null;
+                });
+            else if(propertyHandlers[EsTree.Property.NAME.ordinal()][nodeType.ordinal()] == null)
+                on(EsTree.Property.NAME, nodeType, (p, node, value) -> {
+                    Keyword keyword = node.getKeyword();
+                    if((keyword == Keyword.STORE || keyword == Keyword.LOAD)
+                         && node.getReference() == null)
+                        p.setReference(node, value);
+                    return null;
+                });
+        }
     }
 
     private Node createNewNode(Node node, JSONType type, String specification, Descriptor reference)
@@ -378,6 +719,13 @@ public class Parser
         return newNode;
     }
 
+    private Node createNewNode(Node node, JSONType type, Keyword keyword)
+    {
+        Node newNode = createNewNode(node, type, null, null);
+        newNode.setKeyword(keyword);
+        return newNode;
+    }
+
     private Descriptor setReference(Node node, String value) throws Exceptions.AssignmentException
     {
         Descriptor d = null;
@@ -426,33 +774,45 @@ public class Parser
 
     private void addNameToLastST(String name) throws Exceptions.FunctionNameException
     {
-        for(int i = 0; i < tables.size(); i++){
-            if(i == tables.size()-1){
-                tables.get(i).addName(name);
-            }
-            else if(tables.get(i).getFunctionName().equals(name)){
-                throw new Exceptions.FunctionNameException(name);
-            }
-        }
+        SymbolTable st = tables.get(tables.size()-1);
+        st.addName(name);
+        //the second function of a name is still read, only the first one is registered
+        if(functions.contains(name))
+            throw new Exceptions.FunctionNameException(name);
+        functions.register(st);
     }
 
-    private void addParamToLastST(Descriptor d){
-        SymbolTable st = getTables().get(getTables().size()-1);
+    /**
+     * Symbol Table of the function being read ; the statements after a function go to its table.
+     * @param name declared, for the error of a statement before the first function (they have no table)
+     */
+    private SymbolTable lastST(String name) throws Exceptions.OutsideFunctionException
+    {
+        if(tables.isEmpty())
+            throw new Exceptions.OutsideFunctionException(name);
+        return tables.get(tables.size()-1);
+    }
+
+    private void addParamToLastST(Descriptor d) throws Exceptions.OutsideFunctionException {
+        SymbolTable st = lastST(d.getName());
         st.addParam(d);
     }
 
-    private void addLocalToLastST(Descriptor d){
-        SymbolTable st = getTables().get(getTables().size()-1);
+    private void addLocalToLastST(Descriptor d) throws Exceptions.OutsideFunctionException {
+        SymbolTable st = lastST(d.getName());
         st.addLocal(d);
     }
 
-    private void addReturnToLastST(Resources.DataType dataType) {
-        SymbolTable st = getTables().get(getTables().size()-1);
+    private void addReturnToLastST(Resources.DataType dataType) throws Exceptions.OutsideFunctionException {
+        SymbolTable st = lastST(null);
         st.addReturn(dataType);
     }
 
     private Descriptor findDescriptorAtLastST(String value) throws Exceptions.AssignmentException
     {
+        //nothing is declared before the first function
+        if(tables.isEmpty())
+            throw new Exceptions.AssignmentException(value);
         SymbolTable st = getTables().get(getTables().size()-1);
 
         Descriptor d = st.findParam(value);
@@ -475,6 +835,12 @@ public class Parser
     public void setTables(ArrayList<SymbolTable> tables)
     {
         this.tables = tables;
+        this.functions = new FunctionRegistry(tables);
+    }
+
+    public FunctionRegistry getFunctions()
+    {
+        return functions;
     }
 
     public Node getHir()
@@ -487,7 +853,26 @@ public class Parser
         this.hir = hir;
     }
 
+    /**
+     * @return first error of the json, null if none
+     */
     public String getErrorMessage(){
-        return errorMessage;
+        Diagnostic first = diagnostics.getFirst();
+        return first == null ? null : first.getMessage();
+    }
+
+    /**
+     * @return true after a syntax error of the json : the HIR is incomplete and can't be inferred. After the other
+     *         errors the HIR is whole, only without the descriptors of the names it couldn't find.
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * @return all the errors of the json, in the order they were found
+     */
+    public Diagnostics getDiagnostics(){
+        return diagnostics;
     }
 }
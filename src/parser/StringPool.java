@@ -0,0 +1,49 @@
+package parser;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Interned strings by index : equal strings get the same index and are stored once.
+ */
+public class StringPool
+{
+    private final HashMap<String, Integer> indexes = new HashMap<>();
+    private final ArrayList<String> strings = new ArrayList<>();
+
+    /**
+     * @return index of s, or -1 for null
+     */
+    public int intern(String s)
+    {
+        if(s == null)
+            return -1;
+
+        Integer i = indexes.get(s);
+        if(i == null) {
+            i = strings.size();
+            strings.add(s);
+            indexes.put(s, i);
+        }
+        return i;
+    }
+
+    /**
+     * Atom table use : the first instance seen of s, so every equal string shares it.
+     * @return the pooled instance equal to s, or null for null
+     */
+    public String canonical(String s) {
+        return s == null ? null : strings.get(intern(s));
+    }
+
+    /**
+     * @return the string of index, or null for -1
+     */
+    public String get(int index) {
+        return index < 0 ? null : strings.get(index);
+    }
+
+    public int size() {
+        return strings.size();
+    }
+}
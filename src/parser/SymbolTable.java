@@ -3,12 +3,16 @@ package parser;
 import cli.Resources.DataType;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 
 public class SymbolTable 
 {
     private String functionName;
-	public ArrayList<Descriptor> params = new ArrayList<>();
-	public ArrayList<Descriptor> locals = new ArrayList<>();
+	//lists keep the declaration order, maps index the first descriptor of each name
+	private ArrayList<Descriptor> params = new ArrayList<>();
+	private ArrayList<Descriptor> locals = new ArrayList<>();
+	private HashMap<String, Descriptor> paramsByName = new HashMap<>();
+	private HashMap<String, Descriptor> localsByName = new HashMap<>();
     private DataType functionReturn;
 	
 	public SymbolTable(){
@@ -23,10 +27,12 @@ public class SymbolTable
 	
 	public void addParam(Descriptor d){
 		params.add(d);
+		paramsByName.putIfAbsent(d.getName(), d);
 	}
 	
 	public void addLocal(Descriptor d){
 		locals.add(d);
+		localsByName.putIfAbsent(d.getName(), d);
 	}
 	
 	public void addReturn(DataType d){
@@ -34,18 +40,11 @@ public class SymbolTable
 	}
 
 	public Descriptor findParam(String value) {
-		for(Descriptor d : params)
-			if(d.getName().equals(value))
-				return d;
-		return null;
+		return paramsByName.get(value);
 	}
 
 	public Descriptor findLocal(String value) {
-		for(Descriptor d : locals) {
-			if(d.getName().equals(value))
-				return d;
-		}
-		return null;
+		return localsByName.get(value);
 	}
 
     public DataType getFunctionReturn() {
@@ -73,4 +72,8 @@ public class SymbolTable
     public ArrayList<Descriptor> getParams() {
         return params;
     }
+
+    public ArrayList<Descriptor> getLocals() {
+        return locals;
+    }
 }
@@ -0,0 +1,150 @@
+package semantic;
+
+import cli.Resources.JSONType;
+import parser.Node;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Top level of a module split in units that can be type checked on their own : one unit per function declaration,
+ * with the top level statements that follow it (they use the Symbol Table of that function), plus a first unit for
+ * the statements before any function.
+ *
+ * A unit that calls a function of another unit reads its return type, so the two are ordered like in the sequential
+ * inference : the callee first when it was declared before the caller, the caller first otherwise. Every edge goes
+ * from a lower to a higher index, so the index order is a topological order. Units of the same level (longest
+ * path from a unit without predecessors) don't depend on each other.
+ *
+ * The callers of each function and the calls of each unit tell the fixpoint of TypeInference which units to infer
+ * again when a return or param type changes.
+ */
+class CallGraph
+{
+    static class Unit
+    {
+        final int index;
+        final List<Node> nodes = new ArrayList<>();
+        final TreeSet<Integer> predecessors = new TreeSet<>();
+        //functions declared in the unit and the calls it makes
+        final List<String> functions = new ArrayList<>();
+        final List<Node> calls = new ArrayList<>();
+
+        Unit(int index) {
+            this.index = index;
+        }
+    }
+
+    private final List<Unit> units = new ArrayList<>();
+    private final HashMap<String, Integer> unitOfFunction = new HashMap<>();
+    private final HashMap<String, TreeSet<Integer>> callers = new HashMap<>();
+
+    CallGraph(Node hir)
+    {
+        Unit current = null;
+
+        for(Node n : hir.getAdj())
+        {
+            if(current == null || n.getType() == JSONType.FUNCTION) {
+                current = new Unit(units.size());
+                units.add(current);
+            }
+            current.nodes.add(n);
+        }
+
+        for(Unit u : units)
+            for(Node n : u.nodes)
+                collectFunctions(n, u);
+
+        for(Unit u : units)
+            for(Node n : u.nodes)
+                collectCalls(n, u);
+    }
+
+    List<Unit> getUnits() {
+        return units;
+    }
+
+    /**
+     * @return unit that declares the function, or null
+     */
+    Integer unitOf(String function) {
+        return unitOfFunction.get(function);
+    }
+
+    /**
+     * @return units with a call to the function
+     */
+    Set<Integer> callersOf(String function) {
+        TreeSet<Integer> c = callers.get(function);
+        return c == null ? Collections.emptySet() : c;
+    }
+
+    List<List<Unit>> getLevels()
+    {
+        int[] level = new int[units.size()];
+        List<List<Unit>> levels = new ArrayList<>();
+
+        //predecessors have lower indexes, so their level is already known
+        for(Unit u : units)
+        {
+            for(int p : u.predecessors)
+                level[u.index] = Math.max(level[u.index], level[p] + 1);
+
+            if(level[u.index] == levels.size())
+                levels.add(new ArrayList<>());
+            levels.get(level[u.index]).add(u);
+        }
+        return levels;
+    }
+
+    private void collectFunctions(Node root, Unit unit)
+    {
+        for(Node node : preorder(root))
+            if(node.getType() == JSONType.FUNCTION && unitOfFunction.putIfAbsent(node.getSpecification(), unit.index) == null)
+                unit.functions.add(node.getSpecification());
+    }
+
+    private void collectCalls(Node root, Unit caller)
+    {
+        for(Node node : preorder(root))
+        {
+            if(node.getType() != JSONType.CALLEE)
+                continue;
+
+            caller.calls.add(node);
+            callers.computeIfAbsent(node.getSpecification(), k -> new TreeSet<>()).add(caller.index);
+
+            Integer callee = unitOfFunction.get(node.getSpecification());
+            if(callee != null && callee < caller.index)
+                caller.predecessors.add(callee);
+            else if(callee != null && callee > caller.index)
+                units.get(callee).predecessors.add(caller.index);
+        }
+    }
+
+    /**
+     * Nodes under root in preorder, walked with a stack of their own so any depth fits.
+     */
+    private static List<Node> preorder(Node root)
+    {
+        List<Node> nodes = new ArrayList<>();
+        ArrayDeque<Node> stack = new ArrayDeque<>();
+        stack.push(root);
+
+        while(!stack.isEmpty())
+        {
+            Node node = stack.pop();
+            nodes.add(node);
+            List<Node> adj = node.getAdj();
+            for(int i = adj.size() - 1; i >= 0; i--)
+                stack.push(adj.get(i));
+        }
+        return nodes;
+    }
+}
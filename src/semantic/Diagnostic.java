@@ -0,0 +1,83 @@
+package semantic;
+
+/**
+ * Error found in the code being converted : its kind, the variable or function it is about, the function it is in
+ * and the path of HIR nodes to it from the top level statement.
+ */
+public class Diagnostic
+{
+    public enum Kind {
+        UNDEFINED_SYMBOL,       //use of an undeclared variable
+        UNINITIALIZED,          //value whose type is never known
+        TYPE_MISMATCH,
+        INVALID_OPERATION,
+        INVALID_RETURN_TYPE,
+        FUNCTION_NAME,          //call of an undeclared function, or function declared twice
+        ARG_COUNT,
+        OUTSIDE_FUNCTION,       //declaration before the first function, which has no Symbol Table to go to
+        SYNTAX                  //json the parser can't read
+    }
+
+    private final Kind kind;
+    private final String symbol;
+    private final String function;
+    private final String path;
+    private final String message;
+
+    public Diagnostic(Kind kind, String symbol, String function, String path, String message)
+    {
+        this.kind = kind;
+        this.symbol = symbol;
+        this.function = function;
+        this.path = path;
+        this.message = message;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * @return variable or function the error is about, or null
+     */
+    public String getSymbol() {
+        return symbol;
+    }
+
+    /**
+     * @return function the error is in, or null at the top level
+     */
+    public String getFunction() {
+        return function;
+    }
+
+    /**
+     * @return HIR nodes from the top level statement to the error, e.g. "function f > whilestatement > assignment"
+     */
+    public String getPath() {
+        return path;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * message (in function, at path)
+     */
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder(message);
+        if(function != null || path != null)
+        {
+            sb.append(" (");
+            if(function != null)
+                sb.append("in ").append(function).append(path != null ? ", " : "");
+            if(path != null)
+                sb.append("at ").append(path);
+            sb.append(')');
+        }
+        return sb.toString();
+    }
+}
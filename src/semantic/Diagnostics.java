@@ -0,0 +1,140 @@
+package semantic;
+
+import cli.Resources.JSONType;
+import parser.Node;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Errors of one module, in the order they were found, so the Parser and TypeInference report them all in one run
+ * instead of stopping at the first one. Past MAX_REPORTED they are only counted : a broken file can't flood the report.
+ */
+public class Diagnostics
+{
+    final public static int MAX_REPORTED = 100;
+
+    private final ArrayList<Diagnostic> reported = new ArrayList<>();
+    private int count = 0;
+
+    /**
+     * @param path see Diagnostic.getPath, computed by the caller only when isFull() is false
+     */
+    public void report(Diagnostic.Kind kind, String symbol, String function, String path, String message)
+    {
+        if(count++ < MAX_REPORTED)
+            reported.add(new Diagnostic(kind, symbol, function, path, message));
+    }
+
+    public void report(Exceptions.CompileException e, String function, String path) {
+        report(e.getKind(), e.getSymbol(), function, path, e.getMessage());
+    }
+
+    /**
+     * Diagnostics of a part of the module checked apart (e.g. on another thread), after the ones already here.
+     */
+    public void addAll(Diagnostics other)
+    {
+        for(Diagnostic d : other.reported)
+            if(count++ < MAX_REPORTED)
+                reported.add(d);
+        count += other.count - other.reported.size();
+    }
+
+    /**
+     * @return true when the next diagnostics are only counted
+     */
+    public boolean isFull() {
+        return count >= MAX_REPORTED;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * @return number of errors found, reported or not
+     */
+    public int getCount() {
+        return count;
+    }
+
+    public List<Diagnostic> getAll() {
+        return Collections.unmodifiableList(reported);
+    }
+
+    /**
+     * @return the first error found, or null
+     */
+    public Diagnostic getFirst() {
+        return reported.isEmpty() ? null : reported.get(0);
+    }
+
+    /**
+     * One line per diagnostic.
+     */
+    public String format()
+    {
+        StringBuilder sb = new StringBuilder();
+        for(Diagnostic d : reported)
+            sb.append(d).append('\n');
+        if(count > reported.size())
+            sb.append("... and ").append(count - reported.size()).append(" more\n");
+        return sb.toString();
+    }
+
+    /**
+     * Path of HIR nodes from root to target, searched with a stack of its own : only done for an error. Nodes are
+     * compared with equals, the views of the compact HIR are new objects.
+     * @return null if target is not under root
+     */
+    public static String path(Node root, Node target)
+    {
+        HashMap<Node, Node> parents = new HashMap<>();
+        ArrayDeque<Node> stack = new ArrayDeque<>();
+        parents.put(root, root);
+        stack.push(root);
+
+        while(!stack.isEmpty())
+        {
+            Node n = stack.pop();
+            if(n.equals(target))
+            {
+                List<Node> nodes = new ArrayList<>();
+                for(Node p = n; ; p = parents.get(p)) {
+                    nodes.add(p);
+                    if(p.equals(root))
+                        break;
+                }
+                Collections.reverse(nodes);
+                return path(nodes);
+            }
+            for(Node c : n.getAdj())
+                if(parents.putIfAbsent(c, n) == null)
+                    stack.push(c);
+        }
+        return null;
+    }
+
+    /**
+     * "function f > whilestatement > callee g" : the node types, with the name of functions and calls.
+     */
+    public static String path(List<Node> nodes)
+    {
+        StringBuilder sb = new StringBuilder();
+        for(Node n : nodes)
+        {
+            if(n.getType() == null || n.getType() == JSONType.START)
+                continue;
+            if(sb.length() > 0)
+                sb.append(" > ");
+            sb.append(n.getType().name().toLowerCase());
+            if((n.getType() == JSONType.FUNCTION || n.getType() == JSONType.CALLEE) && n.getSpecification() != null)
+                sb.append(' ').append(n.getSpecification());
+        }
+        return sb.toString();
+    }
+}
@@ -2,49 +2,80 @@ package semantic;
 
 public class Exceptions {
 
-    public static class AssignmentException extends Exception
+    /**
+     * "true" to capture the stack of the errors below, only useful to debug the compiler itself.
+     */
+    final public static String STACK_TRACE_PROPERTY = "js2java.diagnostics.stacktrace";
+    final private static boolean STACK_TRACES = Boolean.getBoolean(STACK_TRACE_PROPERTY);
+
+    /**
+     * Error in the code being converted, reported as a Diagnostic : the stack of the compiler says nothing about it,
+     * so it isn't captured (the costly part of throwing).
+     */
+    public abstract static class CompileException extends Exception
     {
-        private String symbol;
-        public AssignmentException(String symbol){
-            super("Assignment to undefined variable");
+        private final Diagnostic.Kind kind;
+        private final String symbol;
+
+        protected CompileException(String message, Diagnostic.Kind kind, String symbol){
+            super(message, null, false, STACK_TRACES);
+            this.kind = kind;
             this.symbol = symbol;
         }
 
+        public Diagnostic.Kind getKind() {
+            return kind;
+        }
+
+        /**
+         * @return variable or function the error is about, or null
+         */
+        public String getSymbol() {
+            return symbol;
+        }
+    }
+
+    public static class AssignmentException extends CompileException
+    {
+        public AssignmentException(String symbol){
+            super("Assignment to undefined variable", Diagnostic.Kind.UNDEFINED_SYMBOL, symbol);
+        }
+
         public String getMessage(){
-            return "Cannot find symbol \""+symbol+"\"";
+            return "Cannot find symbol \""+getSymbol()+"\"";
         }
     }
 
-    public static class InitializationException extends Exception
+    public static class InitializationException extends CompileException
     {
-        private String symbol;
         public InitializationException(String symbol){
-            super("Initialization");
-            this.symbol = symbol;
+            super("Initialization", Diagnostic.Kind.UNINITIALIZED, symbol);
         }
 
         public String getMessage(){
-            return "A variable might not have been initialized";
+            if(getSymbol() == null)
+                return "A value might not have been initialized";
+            return "Variable \""+getSymbol()+"\" might not have been initialized";
         }
     }
 
-    public static class TypeMismatchException extends Exception
+    public static class TypeMismatchException extends CompileException
     {
-        private String symbol;
         public TypeMismatchException(String symbol){
-            super("Type Mismatch");
-            this.symbol = symbol;
+            super("Type Mismatch", Diagnostic.Kind.TYPE_MISMATCH, symbol);
         }
 
         public String getMessage(){
-            return "Mismatch types for \""+symbol+"\" variable";
+            if(getSymbol() == null)
+                return "Mismatch types";
+            return "Mismatch types for \""+getSymbol()+"\" variable";
         }
     }
 
-    public static class InvalidOperationException extends Exception
+    public static class InvalidOperationException extends CompileException
     {
         public InvalidOperationException(){
-            super("Invalid Operation");
+            super("Invalid Operation", Diagnostic.Kind.INVALID_OPERATION, null);
         }
 
         public String getMessage(){
@@ -52,39 +83,72 @@ public class Exceptions {
         }
     }
 
-    public static class InvalidReturnTypeException extends Exception
+    public static class InvalidReturnTypeException extends CompileException
     {
-        private String name;
         public InvalidReturnTypeException(String function){
-            super("Invalid Operation");
-            this.name = function;
+            super("Invalid Operation", Diagnostic.Kind.INVALID_RETURN_TYPE, function);
         }
         public String getMessage(){
-            return "Invalid type of return for "+name;
+            return "Invalid type of return for "+getSymbol();
         }
     }
 
-    public static class FunctionNameException extends Exception
+    public static class FunctionNameException extends CompileException
     {
-        private String name;
         public FunctionNameException(String name){
-            super("Invalid Function Name");
-            this.name = name;
+            super("Invalid Function Name", Diagnostic.Kind.FUNCTION_NAME, name);
         }
         public String getMessage(){
-            return "Invalid function name "+name;
+            return "Invalid function name "+getSymbol();
         }
     }
 
-    public static class InvalidNumArgsException extends Exception
+    public static class InvalidNumArgsException extends CompileException
     {
-        private String name;
         public InvalidNumArgsException(String name){
-            super("Invalid Function Name");
-            this.name = name;
+            super("Invalid Function Name", Diagnostic.Kind.ARG_COUNT, name);
+        }
+        public String getMessage(){
+            return "Invalid number of arguments for function "+getSymbol();
+        }
+    }
+
+    /**
+     * Identifier without descriptor, that the Parser already reported as undefined : the TypeInference stops at the
+     * expression it is in without reporting it again.
+     */
+    public static class UnresolvedSymbolException extends CompileException
+    {
+        public UnresolvedSymbolException(){
+            super("Unresolved Symbol", Diagnostic.Kind.UNDEFINED_SYMBOL, null);
+        }
+        public String getMessage(){
+            return "Cannot find symbol";
+        }
+    }
+
+    public static class OutsideFunctionException extends CompileException
+    {
+        public OutsideFunctionException(String symbol){
+            super("Outside Function", Diagnostic.Kind.OUTSIDE_FUNCTION, symbol);
+        }
+        public String getMessage(){
+            if(getSymbol() == null)
+                return "Statement outside of a function";
+            return "Variable \""+getSymbol()+"\" is declared outside of a function";
+        }
+    }
+
+    public static class SyntaxException extends CompileException
+    {
+        private final String details;
+
+        public SyntaxException(String details){
+            super("Syntax Error", Diagnostic.Kind.SYNTAX, null);
+            this.details = details;
         }
         public String getMessage(){
-            return "Invalid number of arguments for function "+name;
+            return details;
         }
     }
 }
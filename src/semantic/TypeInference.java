@@ -3,64 +3,376 @@ package semantic;
 import cli.Resources.DataType;
 import cli.Resources.JSONType;
 import parser.Descriptor;
+import parser.FunctionRegistry;
+import parser.Keyword;
 import parser.Node;
 import parser.SymbolTable;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 public class TypeInference
 {
+    final public static String PARALLEL_PROPERTY = "js2java.inference.parallel.min";
+    //below this number of functions the module is checked in one thread
+    final private static int PARALLEL_MIN_FUNCTIONS = Integer.getInteger(PARALLEL_PROPERTY, 64);
+    final private static int MIN_UNITS_PER_SLICE = 8;
+    //name of the descriptors created for the type of an expression
+    final private static String TEMP = "";
+
     private ArrayList<SymbolTable> tables = new ArrayList<>();
+    private FunctionRegistry functions;
     private Node hir;
     private SymbolTable currentTable;
-    private String errorMessage;
+    //errors of the final check, which goes on after them
+    private final Diagnostics diagnostics = new Diagnostics();
+    //fixpoint passes : unknown types are skipped instead of reported
+    private boolean lenient = false;
 
     public TypeInference(ArrayList<SymbolTable> tables, Node hir){
         this.tables = tables;
+        this.functions = new FunctionRegistry(tables);
         this.hir = hir;
-        this.currentTable = tables.get(0);
-        this.errorMessage = null;
+        this.currentTable = first(tables);
     }
 
+    /**
+     * Worker of solve and run(ForkJoinPool) : shares the tables of parent but has its own current table.
+     */
+    private TypeInference(TypeInference parent){
+        this.tables = parent.tables;
+        this.functions = parent.functions;
+        this.hir = parent.hir;
+        this.currentTable = first(parent.tables);
+    }
+
+    /**
+     * @return table of the first function, null when the Parser found none (only statements outside of a function,
+     *         already reported)
+     */
+    private static SymbolTable first(ArrayList<SymbolTable> tables) {
+        return tables.isEmpty() ? null : tables.get(0);
+    }
+
+    /**
+     * Infers the types of params, locals and returns until nothing changes (solve), whatever the order the functions
+     * are declared in, then checks the whole module and the arguments of every call. Every error is added to the
+     * diagnostics and the check goes on with the next node.
+     */
     public void run(){
-        try
+        solve(new CallGraph(hir), null);
+
+        for(Node n : hir.getAdj())
+            SemanticTypeInference(n);
+        verifyCalleeArgsType(hir);
+    }
+
+    /**
+     * Same result and diagnostics as run(), but after solve the functions are checked on pool, level by level of
+     * the CallGraph ; the arguments are then checked in one pass like in run().
+     * Modules with less than PARALLEL_MIN_FUNCTIONS functions (system property js2java.inference.parallel.min)
+     * are checked by run(), and so is everything when the pool has a single thread.
+     */
+    public void run(ForkJoinPool pool){
+        if(tables.size() < PARALLEL_MIN_FUNCTIONS || pool.getParallelism() < 2) {
+            run();
+            return;
+        }
+
+        CallGraph graph = new CallGraph(hir);
+        List<CallGraph.Unit> units = graph.getUnits();
+
+        if(units.size() < 2) {
+            run();
+            return;
+        }
+
+        solve(graph, null);
+
+        Diagnostics[] found = new Diagnostics[units.size()];
+        RuntimeException[] errors = new RuntimeException[units.size()];
+
+        for(List<CallGraph.Unit> level : graph.getLevels())
         {
-            SemanticTypeInference(null,hir);
-            verifyCalleeArgsType(hir);
+            //a task per unit costs more than the inference of a small function : one slice per thread
+            int slices = Math.min(pool.getParallelism(), level.size() / MIN_UNITS_PER_SLICE);
+            ArrayList<ForkJoinTask<?>> tasks = new ArrayList<>();
+
+            for(int s = 1; s < slices; s++)
+            {
+                List<CallGraph.Unit> slice = level.subList(s * level.size() / slices, (s + 1) * level.size() / slices);
+                tasks.add(pool.submit(() -> infer(slice, found, errors)));
+            }
+            infer(level.subList(0, slices > 1 ? level.size() / slices : level.size()), found, errors);
+
+            for(ForkJoinTask<?> t : tasks)
+                t.join();
         }
-        catch (Exceptions.TypeMismatchException e) {
-            e.printStackTrace();
-            errorMessage = e.getMessage();
+
+        //in program order, as run() finds them
+        for(int i = 0; i < units.size(); i++)
+        {
+            if(errors[i] != null)
+                throw errors[i];
+            diagnostics.addAll(found[i]);
         }
-        catch (Exceptions.InitializationException e) {
-            e.printStackTrace();
-            errorMessage = e.getMessage();
+
+        verifyCalleeArgsType(hir);
+    }
+
+    /**
+     * Worklist fixpoint over the units of the CallGraph. Every unit is inferred once in program order; after that a
+     * unit is inferred again only when it has to : the return type of a function it calls was found, or a call
+     * gave a type to one of its params. Types only go from NOTASSIGNED to a type, so each descriptor changes at
+     * most once and the number of passes follows the number of changes. Errors are left to the final check.
+     * @param dirty units that can be inferred (incremental run) ; the others are only read, but their calls give
+     *              types to the params of dirty units. null for every unit
+     */
+    private void solve(CallGraph graph, boolean[] dirty)
+    {
+        List<CallGraph.Unit> units = graph.getUnits();
+        ArrayDeque<CallGraph.Unit> worklist = new ArrayDeque<>();
+        boolean[] queued = new boolean[units.size()];
+        for(CallGraph.Unit u : units)
+            if(dirty == null || dirty[u.index]) {
+                queued[u.index] = true;
+                worklist.add(u);
+            }
+        if(dirty != null)
+            for(CallGraph.Unit u : units)
+                if(!dirty[u.index])
+                    giveParamTypes(u, graph, dirty, worklist, queued);
+
+        TypeInference worker = new TypeInference(this);
+        worker.lenient = true;
+
+        while(!worklist.isEmpty())
+        {
+            CallGraph.Unit u = worklist.poll();
+            queued[u.index] = false;
+
+            DataType[] returns = new DataType[u.functions.size()];
+            for(int i = 0; i < returns.length; i++)
+                returns[i] = functions.get(u.functions.get(i)).getFunctionReturn();
+
+            worker.currentTable = first(tables);
+            try {
+                for(Node n : u.nodes)
+                    worker.SemanticTypeInference(null, n);
+            }
+            catch (Exceptions.CompileException e) {
+                //reported by the final check ; anything else is a bug of the inference and stops it
+            }
+
+            //callers of a function with a new return type
+            for(int i = 0; i < returns.length; i++)
+                if(functions.get(u.functions.get(i)).getFunctionReturn() != returns[i])
+                    for(int c : graph.callersOf(u.functions.get(i)))
+                        if(dirty == null || dirty[c])
+                            enqueue(units.get(c), worklist, queued);
+
+            giveParamTypes(u, graph, dirty, worklist, queued);
         }
-        catch (Exceptions.InvalidOperationException e) {
-            e.printStackTrace();
-            errorMessage = e.getMessage();
+    }
+
+    /**
+     * Callees with new param types : the typed args of the calls of u give their type to the params still unknown.
+     */
+    private void giveParamTypes(CallGraph.Unit u, CallGraph graph, boolean[] dirty, ArrayDeque<CallGraph.Unit> worklist, boolean[] queued)
+    {
+        for(Node call : u.calls)
+        {
+            SymbolTable st = getSymbolTable(call.getSpecification());
+            Integer callee = graph.unitOf(call.getSpecification());
+            if(st == null || callee == null || (dirty != null && !dirty[callee]))
+                continue;
+
+            ArrayList<Descriptor> params = st.getParams();
+            List<Node> args = call.getAdj();
+            for(int i = 0; i < args.size() && i < params.size(); i++)
+            {
+                Descriptor arg = args.get(i).getReference();
+                if(arg != null && arg.getType() != DataType.NOTASSIGNED && params.get(i).getType() == DataType.NOTASSIGNED) {
+                    params.get(i).setType(arg.getType());
+                    enqueue(graph.getUnits().get(callee), worklist, queued);
+                }
+            }
         }
-        catch (Exceptions.InvalidReturnTypeException e) {
-            e.printStackTrace();
-            errorMessage = e.getMessage();
+    }
+
+    /**
+     * Incremental run (cli.IncrementalCompiler) : only the units (see CallGraph) whose first node is in dirty are
+     * inferred and checked. The other units were typed by an earlier compilation and are only read : their calls
+     * still type the params of the dirty functions, and their calls to dirty functions are checked, but nothing
+     * in them is written.
+     * @return first nodes of the units outside dirty that the check had to change (a call gave a type to one of
+     *         their params) : they have to be inferred again, and nothing else was checked
+     */
+    public List<Node> run(Set<Node> dirty)
+    {
+        CallGraph graph = new CallGraph(hir);
+        List<CallGraph.Unit> units = graph.getUnits();
+        boolean[] inferred = new boolean[units.size()];
+        for(CallGraph.Unit u : units)
+            inferred[u.index] = dirty.contains(u.nodes.get(0));
+
+        solve(graph, inferred);
+
+        List<Node> touched = new ArrayList<>();
+        for(CallGraph.Unit u : units)
+            if(inferred[u.index])
+                for(Node n : u.nodes)
+                    SemanticTypeInference(n);
+
+        for(CallGraph.Unit u : units)
+            for(Node call : u.calls)
+            {
+                Integer callee = graph.unitOf(call.getSpecification());
+                if(inferred[u.index] || (callee != null && inferred[callee]))
+                    if(!verifyCall(call, callee == null || inferred[callee], u.nodes))
+                        touched.add(units.get(callee).nodes.get(0));
+            }
+        return touched;
+    }
+
+    private static void enqueue(CallGraph.Unit u, ArrayDeque<CallGraph.Unit> worklist, boolean[] queued)
+    {
+        if(!queued[u.index]) {
+            queued[u.index] = true;
+            worklist.add(u);
         }
-        catch (Exceptions.FunctionNameException e) {
-            e.printStackTrace();
-            errorMessage = e.getMessage();
+    }
+
+    private void infer(List<CallGraph.Unit> units, Diagnostics[] found, RuntimeException[] errors)
+    {
+        for(CallGraph.Unit u : units)
+        {
+            TypeInference worker = new TypeInference(this);
+            try {
+                for(Node n : u.nodes)
+                    worker.SemanticTypeInference(n);
+            }
+            catch (RuntimeException e) {
+                errors[u.index] = e;
+            }
+            found[u.index] = worker.diagnostics;
         }
-        catch (Exceptions.InvalidNumArgsException e) {
-            e.printStackTrace();
-            errorMessage = e.getMessage();
+    }
+
+    /**
+     * Work left on a node : infer it (and its children), or finish a RETURN or a temp once its children are done.
+     * Kept on a stack of steps instead of the thread stack, so the depth of the HIR doesn't matter.
+     */
+    private static class Step
+    {
+        final static int VISIT = 0, CHECK_RETURN = 1, CLEAR_REFERENCE = 2;
+
+        final int kind;
+        final Node parent;
+        final Node node;
+        //CHECK_RETURN : the return had a temp descriptor
+        final boolean temp;
+
+        Step(int kind, Node parent, Node node, boolean temp) {
+            this.kind = kind;
+            this.parent = parent;
+            this.node = node;
+            this.temp = temp;
         }
     }
 
-    private void SemanticTypeInference(Node parent, Node node)
+    /**
+     * Final check of a top level node : an error is added to the diagnostics and the check goes on without the
+     * subtree of the node it was found at.
+     */
+    private void SemanticTypeInference(Node root)
+    {
+        ArrayDeque<Step> work = new ArrayDeque<>();
+        work.push(new Step(Step.VISIT, null, root, false));
+
+        while(!work.isEmpty())
+        {
+            Step s = work.pop();
+            try {
+                step(s, work);
+            }
+            catch (Exceptions.CompileException e) {
+                if(!(e instanceof Exceptions.UnresolvedSymbolException))
+                    report(e, root, s.node);
+                //an arg that can't be typed is not checked against its param
+                else if(s.parent != null && s.parent.getType() == JSONType.ARG)
+                    s.parent.setReference(null);
+                //the return of an expression that failed has no type to check, it would only be a second error
+                Step next = work.peek();
+                if(next != null && next.kind == Step.CHECK_RETURN && next.node.equals(s.parent)) {
+                    work.pop();
+                    if(next.temp)
+                        next.node.setReference(null);
+                }
+            }
+        }
+    }
+
+    /**
+     * Fixpoint pass (lenient) : stops at the first error, the final check reports it. An undefined variable only
+     * stops the expression it is in, so the rest of the function still gives its types.
+     */
+    private void SemanticTypeInference(Node parent, Node node) throws Exceptions.CompileException
+    {
+        ArrayDeque<Step> work = new ArrayDeque<>();
+        work.push(new Step(Step.VISIT, parent, node, false));
+
+        while(!work.isEmpty())
+        {
+            try {
+                step(work.pop(), work);
+            }
+            catch (Exceptions.UnresolvedSymbolException e) {
+                //already reported by the Parser
+            }
+        }
+    }
+
+    private void step(Step s, ArrayDeque<Step> work) throws Exceptions.CompileException
+    {
+        if(s.kind == Step.VISIT)
+            visit(s.parent, s.node, work);
+        else if(s.kind == Step.CHECK_RETURN)
+            checkReturn(s.node, s.temp);
+        else
+            s.node.setReference(null);
+    }
+
+    /**
+     * Adds e, found at node, to the diagnostics : in the function root is, at the path from root to node.
+     */
+    private void report(Exceptions.CompileException e, Node root, Node node)
+    {
+        if(diagnostics.isFull()) {
+            diagnostics.report(e, null, null);
+            return;
+        }
+        String function = root.getType() == JSONType.FUNCTION ? root.getSpecification() : null;
+        diagnostics.report(e, function, Diagnostics.path(root, node));
+    }
+
+    /**
+     * Infers node. What the recursive version did after returning from a child is pushed before it on work,
+     * so it runs once the child is done ; the children are pushed backwards to be inferred in order.
+     */
+    private void visit(Node parent, Node node, ArrayDeque<Step> work)
       throws
       Exceptions.TypeMismatchException,
         Exceptions.InvalidOperationException,
         Exceptions.InitializationException,
         Exceptions.InvalidReturnTypeException,
-        Exceptions.FunctionNameException, Exceptions.InvalidNumArgsException
+        Exceptions.FunctionNameException, Exceptions.InvalidNumArgsException,
+        Exceptions.UnresolvedSymbolException
     {
 
         if(node.getType() == JSONType.FUNCTION){
@@ -76,55 +388,59 @@ public class TypeInference
             }
 
             //args
-            ArrayList<Node> nodes = node.getAdj();
+            List<Node> nodes = node.getAdj();
             if(nodes.size() != st.getNumArgs())
                 throw new Exceptions.InvalidNumArgsException(node.getSpecification());
 
             if(parent != null){
                 DataType dt = st.getFunctionReturn();
-                parent.setDescriptorType(dt);
+                setType(parent, dt);
+                //the args still need their types
+                pushChildren(node, work);
                 return;
             }
         }
         else if(node.getType() == JSONType.ARG)
         {
-            //arg is an expression
-            if(node.getReference() == null && node.getAdj().size() != 0)
+            //arg is an expression (the temp stays, so a new pass finds it again)
+            if((node.getReference() == null || isTemp(node.getReference())) && node.getAdj().size() != 0)
             {
                 //temp
-                node.setReference(new Descriptor("",DataType.NOTASSIGNED));
-                SemanticTypeInference(node,node.getAdj().get(0));
+                if(node.getReference() == null)
+                    node.setReference(new Descriptor(TEMP,DataType.NOTASSIGNED));
+                work.push(new Step(Step.VISIT, node, node.getAdj().get(0), false));
                 return;
             }
         }
         //return type
         else if(node.getType() == JSONType.RETURN)
         {
-            boolean temp = false;
+            pushChildren(node, work);
             if(node.getSpecification() == null)
             {
                 //temp
-                temp = true;
-                node.setReference(new Descriptor("",DataType.NOTASSIGNED));
-                SemanticTypeInference(node,node.getAdj().get(0));
-            }
-            DataType dt1 = node.getDescriptorType();
-            DataType dt2 = currentTable.getFunctionReturn();
-            //different return type
-            if (dt1 != dt2) {
-                if(dt2 == DataType.NOTASSIGNED) currentTable.setFunctionReturn(dt1);
-                else throw new Exceptions.InvalidReturnTypeException(currentTable.getFunctionName());
+                node.setReference(new Descriptor(TEMP,DataType.NOTASSIGNED));
+                work.push(new Step(Step.CHECK_RETURN, null, node, true));
+                work.push(new Step(Step.VISIT, node, node.getAdj().get(0), false));
             }
-
-            if(temp)
-                node.setReference(null);
+            else
+                checkReturn(node, false);
+            return;
         }
         //operations
         else if(node.getType() == JSONType.OPERATION) {
-            DataType dt = typeInferenceOp(node);
+            DataType dt = DataType.NOTASSIGNED;
+            try {
+                dt = typeInferenceOp(node);
+            }
+            catch (Exceptions.InitializationException e) {
+                //some operand may get its type in a later pass
+                if(!lenient)
+                    throw e;
+            }
 
             if(parent != null){
-                parent.setDescriptorType(dt);
+                setType(parent, dt);
                 return;
             }
         }
@@ -132,10 +448,10 @@ public class TypeInference
         else if(node.getSpecification() != null)
         {
             //assignments or variable declarations --> must analyse childs
-            if(node.getSpecification().equals("store"))
+            if(node.getKeyword() == Keyword.STORE)
             {
                 //childs
-                ArrayList<Node> nodes = node.getAdj();
+                List<Node> nodes = node.getAdj();
 
                 //no childs -> end
                 if(nodes.size() == 0)
@@ -145,183 +461,342 @@ public class TypeInference
                 Node firstNode = nodes.get(0);
 
                 //semantic inference to sons
-                SemanticTypeInference(node,firstNode);
+                work.push(new Step(Step.VISIT, node, firstNode, false));
                 return;
             }
             //assignment a uma variavel
             else if(node.getType() == JSONType.ASSIGNMENT)
             {
-                ArrayList<Node> nodes = node.getAdj();
+                List<Node> nodes = node.getAdj();
 
-                if(!nodes.get(0).getSpecification().equals("load"))
+                if(nodes.get(0).getKeyword() != Keyword.LOAD)
                 {
-                    nodes.get(0).setReference(new Descriptor("",DataType.NOTASSIGNED));
+                    nodes.get(0).setReference(new Descriptor(TEMP,DataType.NOTASSIGNED));
                 }
-                SemanticTypeInference(nodes.get(0),nodes.get(1));
+                work.push(new Step(Step.VISIT, nodes.get(0), nodes.get(1), false));
                 return;
             }
             //loadarrays -> right or left side
-            else if(node.getSpecification().equals("loadarray")){
-                DataType dt = typeInferenceArray(node); //verifica erros nos arrays
+            else if(node.getKeyword() == Keyword.LOADARRAY){
+                DataType dt = typeInferenceArray(node, null); //verifica erros nos arrays
 
                 if(parent != null) {
-                   parent.setDescriptorType(dt);
+                   setType(parent, dt);
                    return;
                 }
             }
             //store arrays
-            else if(node.getSpecification().equals("storearray"))
+            else if(node.getKeyword() == Keyword.STOREARRAY)
             {
                 Node firstNode = node.getAdj().get(0);
 
                 if(node.getType() == JSONType.VARIABLEDECLARATION){
-                    DataType dt = typeInferenceArray(firstNode);
-                    node.setDescriptorType(getDescriptionTypeArrays(dt));
+                    DataType dt = typeInferenceArray(firstNode, node.getReference().getName());
+                    setType(node, getDescriptionTypeArrays(dt));
                 }
                 else if(node.getType() == JSONType.ASSIGNMENT)
                 {
                     //temp
-                    DataType dt1 = typeInferenceArray(firstNode);
-                    firstNode.setReference(new Descriptor("",dt1));
-                    //calcs
+                    DataType dt1 = typeInferenceArray(firstNode, null);
+                    firstNode.setReference(new Descriptor(TEMP,dt1));
+                    //calcs, then back to the original
                     Node secondNode = node.getAdj().get(1);
-                    SemanticTypeInference(firstNode,secondNode);
-                    //original
-                    firstNode.setReference(null);
+                    work.push(new Step(Step.CLEAR_REFERENCE, null, firstNode, false));
+                    work.push(new Step(Step.VISIT, firstNode, secondNode, false));
                 }
                 return;
             }
             //identifiers and literals assignments to parents
             else if(parent != null) {
-                parent.setDescriptorType(node.getDescriptorType());
+                setType(parent, type(node));
             }
         }
 
-        //recursive call
-        ArrayList<Node> nodes = node.getAdj();
-        for (Node n : nodes) {
-            SemanticTypeInference(null,n);
+        //children
+        pushChildren(node, work);
+    }
+
+    private static void pushChildren(Node node, ArrayDeque<Step> work)
+    {
+        List<Node> nodes = node.getAdj();
+        for(int i = nodes.size() - 1; i >= 0; i--)
+            work.push(new Step(Step.VISIT, null, nodes.get(i), false));
+    }
+
+    private void checkReturn(Node node, boolean temp) throws Exceptions.InvalidReturnTypeException
+    {
+        DataType dt1 = node.getDescriptorType();
+        DataType dt2 = currentTable.getFunctionReturn();
+        if(temp)
+            node.setReference(null);
+        //different return type
+        if (dt1 != dt2 && !(lenient && dt1 == DataType.NOTASSIGNED)) {
+            if(dt2 == DataType.NOTASSIGNED) currentTable.setFunctionReturn(dt1);
+            else throw new Exceptions.InvalidReturnTypeException(currentTable.getFunctionName());
         }
     }
 
+    /**
+     * Gives type to the descriptor of node. In the fixpoint passes an unknown type is skipped : it may be known later.
+     */
+    private void setType(Node node, DataType type) throws Exceptions.TypeMismatchException, Exceptions.UnresolvedSymbolException
+    {
+        if(lenient && type == DataType.NOTASSIGNED)
+            return;
+        if(node.getReference() == null)
+            throw new Exceptions.UnresolvedSymbolException();
+        node.setDescriptorType(type);
+    }
+
+    /**
+     * Type of an identifier or literal.
+     * @throws Exceptions.UnresolvedSymbolException for an identifier the Parser couldn't find (no descriptor)
+     */
+    private static DataType type(Node node) throws Exceptions.UnresolvedSymbolException
+    {
+        if(node.getReference() == null)
+            throw new Exceptions.UnresolvedSymbolException();
+        return node.getDescriptorType();
+    }
+
+    private static boolean isTemp(Descriptor d) {
+        return TEMP.equals(d.getName());
+    }
+
     /**
      * Verifies if arguments and return types of calees functions are correct.
-     * Executed after type inference.
-     * @param node
+     * Executed after type inference ; a call with a wrong arg is added to the diagnostics and the next one checked.
+     * @param root
      */
-    private void verifyCalleeArgsType(final Node node) throws Exceptions.TypeMismatchException
+    private void verifyCalleeArgsType(final Node root)
     {
-        if(node.getType() == JSONType.CALLEE)
+        for(Node top : root.getAdj())
         {
-            SymbolTable st = getSymbolTable(node.getSpecification());
-            //childs
-            ArrayList<Node> nodes = node.getAdj();
-            ArrayList<Descriptor> args = st.getParams();
-
-            //two cases :
-            //    args are NOTASSIGNED -> assign now
-            //    types assigned and different -> error
-            for (int i = 0; i < nodes.size(); i++)
+            List<Node> roots = Collections.singletonList(top);
+            //preorder, like the recursive walk
+            ArrayDeque<Node> stack = new ArrayDeque<>();
+            stack.push(top);
+
+            while(!stack.isEmpty())
             {
-                if(nodes.get(i).getDescriptorType() != args.get(i).getType())
-                {
-                    if(args.get(i).getType() == DataType.NOTASSIGNED){
-                        args.get(i).setType(nodes.get(i).getDescriptorType());
-                    }else{
-                        throw new Exceptions.TypeMismatchException(args.get(i).getName());
-                    }
-                }
+                Node node = stack.pop();
+
+                if(node.getType() == JSONType.CALLEE)
+                    verifyCall(node, true, roots);
+
+                List<Node> nodes = node.getAdj();
+                for (int i = nodes.size() - 1; i >= 0; i--)
+                    stack.push(nodes.get(i));
             }
         }
+    }
 
-        ArrayList<Node> nodes = node.getAdj();
-        for (Node n : nodes) {
-            verifyCalleeArgsType(n);
+    /**
+     * verifyCall whose error is added to the diagnostics.
+     * @param roots top level nodes the call is under one of (incremental run : the nodes of its unit)
+     * @return false if a param had to be assigned but assign was false
+     */
+    private boolean verifyCall(final Node call, final boolean assign, final List<Node> roots)
+    {
+        try {
+            return verifyCall(call, assign);
+        }
+        catch (Exceptions.TypeMismatchException e) {
+            Node root = roots.get(0);
+            for(Node top : roots)
+                if(Diagnostics.path(top, call) != null) {
+                    root = top;
+                    break;
+                }
+            report(e, root, call);
+            return true;
         }
     }
 
-    private void changeCurrentTable(final String specification) {
-        for (SymbolTable st : tables){
-            if(st.getFunctionName().equals(specification))
-                currentTable = st;
+    /**
+     * @param assign params still NOTASSIGNED can take the type of their arg
+     * @return false if a param had to be assigned but assign was false
+     */
+    private boolean verifyCall(final Node call, final boolean assign) throws Exceptions.TypeMismatchException
+    {
+        SymbolTable st = getSymbolTable(call.getSpecification());
+        //childs
+        List<Node> nodes = call.getAdj();
+        //unknown function or wrong number of args : already reported by the inference
+        if(st == null || st.getParams().size() != nodes.size())
+            return true;
+        ArrayList<Descriptor> args = st.getParams();
+
+        //two cases :
+        //    args are NOTASSIGNED -> assign now
+        //    types assigned and different -> error
+        for (int i = 0; i < nodes.size(); i++)
+        {
+            //undefined variable, or an expression with one : already reported
+            if(nodes.get(i).getReference() == null)
+                continue;
+            if(nodes.get(i).getDescriptorType() != args.get(i).getType())
+            {
+                if(args.get(i).getType() == DataType.NOTASSIGNED){
+                    if(!assign)
+                        return false;
+                    args.get(i).setType(nodes.get(i).getDescriptorType());
+                }else{
+                    throw new Exceptions.TypeMismatchException(args.get(i).getName());
+                }
+            }
         }
+        return true;
+    }
+
+    private void changeCurrentTable(final String specification) {
+        SymbolTable st = functions.get(specification);
+        if(st != null)
+            currentTable = st;
     }
 
     private SymbolTable getSymbolTable(final String specification) {
-        for (SymbolTable st : tables)
-            if(st.getFunctionName().equals(specification))
-                return st;
-        return null;
+        return functions.get(specification);
     }
 
-    private DataType typeInferenceArray(Node node) throws Exceptions.TypeMismatchException
+    /**
+     * Operation or array declaration whose children are being typed : the operand types found so far (and the
+     * variables they come from, null for a literal or an operation), or the element type of the array.
+     */
+    private static class Frame
     {
-        ArrayList<Node> nodes = node.getAdj();
-        Node firstNode = nodes.get(0);
+        final Node node;
+        int next = 0;
+        final ArrayList<DataType> operands = new ArrayList<>();
+        final ArrayList<String> names = new ArrayList<>();
+        DataType type = DataType.NOTASSIGNED;
+
+        Frame(Node node) {
+            this.node = node;
+        }
+    }
+
+    /**
+     * @param name variable an array declaration is stored to, for its errors ; null for an array load
+     */
+    private DataType typeInferenceArray(Node node, String name) throws Exceptions.TypeMismatchException, Exceptions.UnresolvedSymbolException
+    {
+        Node firstNode = node.getAdj().get(0);
 
         //special case for stores --> all childs must have the same type
         if(node.getType() == JSONType.ARRAYDECLARATION)
-        {
-            DataType dt1 = DataType.NOTASSIGNED;
+            return typeInferenceArrayDeclaration(node, name);
+
+        //a[i][j] : ARRAYLOAD of ARRAYLOAD, the type is the one of the innermost array
+        if(node.getType() == JSONType.ARRAYLOAD) {
+            while(firstNode.getType() == JSONType.ARRAYLOAD)
+                firstNode = firstNode.getAdj().get(0);
+            return getDescriptionTypeArrays(type(firstNode));
+        }
+        return DataType.NOTASSIGNED;
+    }
 
-            if(firstNode.getReference() != null)
-                dt1 = firstNode.getDescriptorType();
+    /**
+     * Element type of a (multi-dimensional) array declaration ; the inner arrays are typed first, on a stack.
+     */
+    private DataType typeInferenceArrayDeclaration(Node root, String name) throws Exceptions.TypeMismatchException, Exceptions.UnresolvedSymbolException
+    {
+        ArrayDeque<Frame> stack = new ArrayDeque<>();
+        stack.push(arrayFrame(root));
 
-            //multi-dimensional array
-            for(Node n_dim : nodes)
+        while(true)
+        {
+            Frame f = stack.peek();
+            List<Node> nodes = f.node.getAdj();
+
+            if(f.next < nodes.size())
             {
+                Node n_dim = nodes.get(f.next++);
+                //multi-dimensional array
                 if(n_dim.getType() == JSONType.ARRAYDECLARATION)
-                {
-                    DataType dt2 = typeInferenceArray(n_dim);
-                    if(dt1 == DataType.NOTASSIGNED){
-                        dt1 = dt2;
-                    }
-                    else if(dt1 != dt2){
-                        if((dt1 == DataType.INT && dt2 == DataType.DOUBLE) || (dt2 == DataType.INT && dt1 == DataType.DOUBLE)) {
-                            dt1 = DataType.DOUBLE;
-                        }
-                        else{
-                            throw new Exceptions.TypeMismatchException("resolver 2");
-                        }
-                    }
+                    stack.push(arrayFrame(n_dim));
+                else if(type(n_dim) != f.type)
+                    throw new Exceptions.TypeMismatchException(name);
+                continue;
+            }
+
+            stack.pop();
+            if(stack.isEmpty())
+                return f.type;
+
+            Frame outer = stack.peek();
+            DataType dt1 = outer.type, dt2 = f.type;
+            if(dt1 == DataType.NOTASSIGNED){
+                outer.type = dt2;
+            }
+            else if(dt1 != dt2){
+                if((dt1 == DataType.INT && dt2 == DataType.DOUBLE) || (dt2 == DataType.INT && dt1 == DataType.DOUBLE)) {
+                    outer.type = DataType.DOUBLE;
                 }
                 else{
-                    if(n_dim.getDescriptorType() != dt1)
-                        throw new Exceptions.TypeMismatchException("resolver 1");
+                    throw new Exceptions.TypeMismatchException(name);
                 }
             }
-            return dt1;
-        }
-        else if(node.getType() == JSONType.ARRAYLOAD) {
-            if(firstNode.getType() == JSONType.ARRAYLOAD) {
-                return typeInferenceArray(firstNode);
-            }
-            return getDescriptionTypeArrays(firstNode.getDescriptorType());
         }
-        return DataType.NOTASSIGNED;
     }
 
-    private DataType typeInferenceOp(Node node) throws Exceptions.TypeMismatchException, Exceptions.InvalidOperationException, Exceptions.InitializationException
+    private static Frame arrayFrame(Node node)
     {
-        ArrayList<Node> nodes = node.getAdj();
-        ArrayList<DataType> dataTypes = new ArrayList<>();
+        Frame f = new Frame(node);
+        Node firstNode = node.getAdj().get(0);
+        if(firstNode.getReference() != null)
+            f.type = firstNode.getDescriptorType();
+        return f;
+    }
 
-        for(Node n : nodes){
-            if(n.getType() == cli.Resources.JSONType.OPERATION){
-                DataType dt = typeInferenceOp(n);
-                dataTypes.add(dt);
-            }
-            else if(n.getType() == cli.Resources.JSONType.IDENTIFIER || n.getType() == cli.Resources.JSONType.LITERAL){
-                dataTypes.add(n.getReference().getType());
-            }
-            else if(n.getType() == cli.Resources.JSONType.ARRAYLOAD)
+    private DataType typeInferenceOp(Node root) throws Exceptions.TypeMismatchException, Exceptions.InvalidOperationException, Exceptions.InitializationException, Exceptions.UnresolvedSymbolException
+    {
+        //nested operations are typed first, on a stack : their type is an operand of the enclosing one
+        ArrayDeque<Frame> stack = new ArrayDeque<>();
+        stack.push(new Frame(root));
+
+        while(true)
+        {
+            Frame f = stack.peek();
+            List<Node> nodes = f.node.getAdj();
+
+            if(f.next < nodes.size())
             {
-                DataType dt = typeInferenceArray(n);
-                dataTypes.add(dt);
+                Node n = nodes.get(f.next++);
+                if(n.getType() == cli.Resources.JSONType.OPERATION){
+                    stack.push(new Frame(n));
+                }
+                else if(n.getType() == cli.Resources.JSONType.IDENTIFIER || n.getType() == cli.Resources.JSONType.LITERAL){
+                    f.operands.add(type(n));
+                    f.names.add(n.getType() == cli.Resources.JSONType.IDENTIFIER ? n.getReference().getName() : null);
+                }
+                else if(n.getType() == cli.Resources.JSONType.ARRAYLOAD)
+                {
+                    DataType dt = typeInferenceArray(n, null);
+                    f.operands.add(dt);
+                    f.names.add(arrayName(n));
+                }
+                continue;
             }
+
+            DataType dt = getDescriptionTypeOp(f.operands, f.names, f.node.getSpecification());
+            stack.pop();
+            if(stack.isEmpty())
+                return dt;
+            stack.peek().operands.add(dt);
+            stack.peek().names.add(null);
         }
+    }
 
-        return getDescriptionTypeOp(dataTypes,node.getSpecification());
+    /**
+     * a[i][j] -> a ; null if the array is not a variable
+     */
+    private static String arrayName(Node load)
+    {
+        Node array = load.getAdj().get(0);
+        while(array.getType() == JSONType.ARRAYLOAD)
+            array = array.getAdj().get(0);
+        return array.getType() == JSONType.IDENTIFIER && array.getReference() != null ? array.getReference().getName() : null;
     }
 
     private DataType getDescriptionTypeArrays(DataType descriptorType)
@@ -347,13 +822,16 @@ public class TypeInference
         return DataType.NOTASSIGNED;
     }
 
-    private DataType getDescriptionTypeOp(ArrayList<DataType> dataTypes, String op) throws Exceptions.InitializationException, Exceptions.InvalidOperationException
+    /**
+     * @param names variable of each operand, null if it is not one
+     */
+    private DataType getDescriptionTypeOp(ArrayList<DataType> dataTypes, ArrayList<String> names, String op) throws Exceptions.InitializationException, Exceptions.InvalidOperationException
     {
         DataType dtLeft = dataTypes.get(0);
 
         //if some variables are NOT ASSIGNED -> problems with initialization
         if(dtLeft == DataType.NOTASSIGNED){
-            throw new Exceptions.InitializationException("resolver");
+            throw new Exceptions.InitializationException(names.get(0));
         }
         //- / * ++ -- only allowed for numbers
         if((op.equals("/") || op.equals("-") || op.equals("*") || op.equals("++") || op.equals("--")) && !(dtLeft == DataType.INT || dtLeft == DataType.DOUBLE)) {
@@ -372,7 +850,7 @@ public class TypeInference
 
         //if some variables are NOT ASSIGNED -> problems with initialization
         if(dtRight == DataType.NOTASSIGNED){
-            throw new Exceptions.InitializationException("resolver");
+            throw new Exceptions.InitializationException(names.get(1));
         }
         // - / * only allowed for numbers
         if((op.equals("/") || op.equals("-") || op.equals("*")) && !(dtRight == DataType.INT || dtRight == DataType.DOUBLE)) {
@@ -403,8 +881,19 @@ public class TypeInference
             return dtRight;
     }
 
+    /**
+     * @return first error of the check, null if none
+     */
     public String getErrorMessage(){
-        return errorMessage;
+        Diagnostic first = diagnostics.getFirst();
+        return first == null ? null : first.getMessage();
+    }
+
+    /**
+     * @return all the errors of the check, in program order
+     */
+    public Diagnostics getDiagnostics(){
+        return diagnostics;
     }
 
 }
@@ -0,0 +1,148 @@
+package cli;
+
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import semantic.Diagnostic;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Output mapping of BatchCompiler : every input gives outputDir/<path relative to its root>.java, and an input
+ * whose .java is already the one of an earlier input fails instead of overwriting it.
+ */
+public class BatchCompilerTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void noCache() {
+        System.setProperty(AstCache.CACHE_PROPERTY, "false");
+    }
+
+    private Path write(String path, String code) throws IOException
+    {
+        Path file = folder.getRoot().toPath().resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.write(file, code.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static String function(String name) {
+        return "function " + name + "(){\n    var x = 1;\n    return x;\n}\n";
+    }
+
+    private String root(String name) {
+        return folder.getRoot().toPath().resolve(name).toString();
+    }
+
+    @Test
+    public void outputMirrorsTheInputTree() throws IOException
+    {
+        write("in/a.js", function("a"));
+        write("in/sub/deep/b.js", function("b"));
+        write("in/notes.txt", "not javascript");
+        Path out = folder.getRoot().toPath().resolve("out");
+
+        List<BatchCompiler.Source> sources = BatchCompiler.collect(Collections.singletonList(root("in")));
+        assertEquals(2, sources.size());
+        assertEquals(Paths.get("a.js"), sources.get(0).getRelative());
+        assertEquals(Paths.get("sub", "deep", "b.js"), sources.get(1).getRelative());
+
+        BatchCompiler compiler = new BatchCompiler(out);
+        compiler.setDumpHir(true);
+        for(BatchCompiler.Result r : compiler.run(sources))
+            assertNull(r.getErrorMessage());
+
+        assertTrue(Files.exists(out.resolve("a.java")));
+        assertTrue(Files.exists(out.resolve("a.hir.txt")));
+        assertTrue(new String(Files.readAllBytes(out.resolve("sub/deep/b.java")), StandardCharsets.UTF_8).contains("b("));
+        assertFalse(Files.exists(out.resolve("notes.java")));
+    }
+
+    @Test
+    public void estreeJsonMapsToJavaToo() throws Exception
+    {
+        write("in/m.json", new RhinoFrontend().parse(function("m")));
+        Path out = folder.getRoot().toPath().resolve("out");
+
+        List<BatchCompiler.Source> sources = BatchCompiler.collect(Collections.singletonList(root("in")), true);
+        assertEquals(1, sources.size());
+        assertTrue(sources.get(0).isEstree());
+
+        assertNull(new BatchCompiler(out).run(sources).get(0).getErrorMessage());
+        assertTrue(Files.exists(out.resolve("m.java")));
+    }
+
+    @Test
+    public void sameRelativePathUnderTwoRootsFailsTheLaterOne() throws IOException
+    {
+        for(int threads : new int[]{ 1, 4 })
+        {
+            write("first/x.js", function("fromFirst"));
+            write("second/x.js", function("fromSecond"));
+            write("second/y.js", function("y"));
+            Path out = folder.getRoot().toPath().resolve("out" + threads);
+
+            List<BatchCompiler.Source> sources = BatchCompiler.collect(Arrays.asList(root("first"), root("second")));
+            assertEquals(3, sources.size());
+
+            List<BatchCompiler.Result> results = new BatchCompiler(out).run(sources, threads);
+            int failed = 0;
+            for(BatchCompiler.Result r : results)
+                if(r.getErrorMessage() != null) {
+                    failed++;
+                    assertTrue(r.getSource().getFile().toString().contains("second"));
+                    assertTrue(r.getErrorMessage().contains("already the one of"));
+                }
+            assertEquals(1, failed);
+
+            String java = new String(Files.readAllBytes(out.resolve("x.java")), StandardCharsets.UTF_8);
+            assertTrue(java.contains("fromFirst"));
+            assertFalse(java.contains("fromSecond"));
+            assertTrue(Files.exists(out.resolve("y.java")));
+        }
+    }
+
+    @Test
+    public void samePathGivenTwiceIsCompiledOnce() throws IOException
+    {
+        Path file = write("in/a.js", function("a"));
+        List<BatchCompiler.Source> sources = BatchCompiler.collect(Arrays.asList(root("in"), file.toString()));
+        assertEquals(1, sources.size());
+
+        BatchCompiler.Result r = new BatchCompiler(folder.getRoot().toPath().resolve("out")).run(sources).get(0);
+        assertNull(r.getErrorMessage());
+        assertNotNull(r.getMetrics());
+    }
+
+    @Test
+    public void parserAndTypeErrorsAreReportedTogether() throws IOException
+    {
+        write("in/errors.js", "function main(){\n    var v = undefinedVar + 1;\n    var a = 1;\n    a = \"s\";\n}\n");
+        Path out = folder.getRoot().toPath().resolve("out");
+
+        BatchCompiler.Result r = new BatchCompiler(out).run(BatchCompiler.collect(Collections.singletonList(root("in")))).get(0);
+        assertEquals(2, r.getDiagnostics().getCount());
+        assertEquals(Diagnostic.Kind.UNDEFINED_SYMBOL, r.getDiagnostics().getAll().get(0).getKind());
+        assertEquals(Diagnostic.Kind.TYPE_MISMATCH, r.getDiagnostics().getAll().get(1).getKind());
+        assertTrue(r.getErrorMessage().contains("undefinedVar"));
+        assertTrue(r.formatErrors("  ").contains("Mismatch types for \"a\" variable"));
+        assertFalse(Files.exists(out.resolve("errors.java")));
+    }
+}
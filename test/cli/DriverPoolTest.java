@@ -0,0 +1,136 @@
+package cli;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.htmlunit.HtmlUnitDriver;
+
+import java.io.File;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * DriverPool on HtmlUnit browsers and the local stand-in of the esprima demo page (test/resources/standin) :
+ * no network and no chromedriver needed. Run from the project root.
+ */
+public class DriverPoolTest
+{
+    final static String STAND_IN = new File("test/resources/standin/parse.html").toURI().toString();
+
+    private final AtomicInteger created = new AtomicInteger();
+    private final AtomicInteger alive = new AtomicInteger();
+    private final AtomicInteger maxAlive = new AtomicInteger();
+    private DriverPool pool;
+
+    static {
+        Logger.getLogger("com.gargoylesoftware").setLevel(Level.OFF);
+    }
+
+    @Before
+    public void setUp() {
+        pool = new DriverPool(STAND_IN, 2, 3, () -> {
+            created.incrementAndGet();
+            maxAlive.accumulateAndGet(alive.incrementAndGet(), Math::max);
+            return new HtmlUnitDriver(true) {
+                @Override
+                public void quit() {
+                    alive.decrementAndGet();
+                    super.quit();
+                }
+            };
+        });
+    }
+
+    @After
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    public void warmUpOpensEverySession()
+    {
+        pool.warmUp();
+        assertEquals(2, pool.getIdle());
+        assertEquals(2, created.get());
+    }
+
+    @Test
+    public void releasedSessionIsReused() throws InterruptedException
+    {
+        DriverPool.Session first = pool.acquire();
+        WebDriver driver = first.getDriver();
+        pool.release(first);
+
+        DriverPool.Session second = pool.acquire();
+        assertSame(driver, second.getDriver());
+        assertEquals(1, second.getUses());
+        pool.release(second);
+        assertEquals(1, created.get());
+    }
+
+    @Test
+    public void sessionIsRecycledAfterMaxUses() throws InterruptedException
+    {
+        WebDriver driver = null;
+        for(int i = 0; i < 3; i++)
+        {
+            DriverPool.Session session = pool.acquire();
+            driver = session.getDriver();
+            pool.release(session);
+        }
+        assertEquals(0, pool.getIdle());
+
+        DriverPool.Session next = pool.acquire();
+        assertNotSame(driver, next.getDriver());
+        assertEquals(0, next.getUses());
+        pool.release(next);
+    }
+
+    @Test
+    public void sessionWithoutTheParserPageIsReplaced() throws InterruptedException
+    {
+        DriverPool.Session session = pool.acquire();
+        WebDriver driver = session.getDriver();
+        pool.release(session);
+
+        driver.get("about:blank");
+        DriverPool.Session next = pool.acquire();
+        assertNotSame(driver, next.getDriver());
+        pool.release(next);
+    }
+
+    @Test
+    public void concurrentRequestsShareAtMostSizeSessions() throws Exception
+    {
+        SeleniumFrontend frontend = new SeleniumFrontend(pool, 10000);
+        ExecutorService clients = Executors.newFixedThreadPool(6);
+        try {
+            Future<?>[] requests = new Future<?>[12];
+            for(int i = 0; i < requests.length; i++)
+            {
+                String code = "function f" + i + "(){ return " + i + "; }";
+                requests[i] = clients.submit(() -> frontend.parse(code));
+            }
+            for(Future<?> request : requests)
+                assertTrue(((String) request.get(60, TimeUnit.SECONDS)).contains("\"Program\""));
+        }
+        finally {
+            clients.shutdownNow();
+        }
+
+        //12 requests, 3 uses per session : at least 4 sessions, never more than 2 at once
+        assertTrue(created.get() >= 4);
+        assertTrue(maxAlive.get() <= 2);
+    }
+}
@@ -0,0 +1,137 @@
+package cli;
+
+import codegeneration.CodeGenerator;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import parser.Parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Kept units of IncrementalCompiler : an edit compiles again the changed unit and every kept unit whose inputs
+ * changed with it (callers of a new signature, callees of new arg types), and the code is always the one of a full
+ * compilation of the same version.
+ */
+public class IncrementalCompilerTest
+{
+    final private static String MODULE =
+            "function g(p){\n    var r = p;\n    return r;\n}\n" +
+            "function f(){\n    var a = g(1);\n    return a;\n}\n" +
+            "function h(){\n    var z = 2;\n    return z;\n}\n";
+
+    private IncrementalCompiler compiler;
+
+    @BeforeClass
+    public static void noCache() {
+        System.setProperty(AstCache.CACHE_PROPERTY, "false");
+    }
+
+    @Before
+    public void setUp() {
+        compiler = new IncrementalCompiler();
+    }
+
+    private IncrementalCompiler.Compilation compile(String code)
+    {
+        BatchCompiler.Result result = new BatchCompiler.Result(null);
+        IncrementalCompiler.Compilation c = compiler.compile(code, false, result);
+        assertNull(result.getErrorMessage());
+        assertNotNull(c);
+        return c;
+    }
+
+    /**
+     * Code of BatchCompiler for the same module.
+     */
+    private static String full(String code)
+    {
+        BatchCompiler.Result result = new BatchCompiler.Result(null);
+        Parser p = BatchCompiler.analyze(code, false, result);
+        assertNull(result.getErrorMessage());
+        CodeGenerator cg = new CodeGenerator(p.getHir(), p.getTables());
+        cg.run();
+        return cg.getCode();
+    }
+
+    private void assertUnits(int reused, int compiled, IncrementalCompiler.Compilation c)
+    {
+        assertEquals("reused", reused, c.getReused());
+        assertEquals("compiled", compiled, c.getCompiled());
+    }
+
+    @Test
+    public void sameModuleReusesEveryUnit()
+    {
+        assertUnits(0, 3, compile(MODULE));
+        IncrementalCompiler.Compilation again = compile(MODULE);
+        assertUnits(3, 0, again);
+        assertEquals(full(MODULE), again.getCode());
+    }
+
+    @Test
+    public void newReturnTypeRecompilesTheCallers()
+    {
+        compile(MODULE);
+        String edited = MODULE.replace("var r = p;", "var r = \"s\";");
+
+        IncrementalCompiler.Compilation c = compile(edited);
+        assertUnits(1, 2, c);
+        assertTrue(c.getCode().contains("String a = g(1);"));
+        assertEquals(full(edited), c.getCode());
+    }
+
+    @Test
+    public void newArgTypesRecompileTheCallee()
+    {
+        compile(MODULE);
+        String edited = MODULE.replace("g(1)", "g(2.5)");
+
+        IncrementalCompiler.Compilation c = compile(edited);
+        assertUnits(1, 2, c);
+        assertTrue(c.getCode().contains("double r = p;"));
+        assertEquals(full(edited), c.getCode());
+    }
+
+    @Test
+    public void unrelatedEditKeepsTheOtherUnits()
+    {
+        compile(MODULE);
+        String edited = MODULE.replace("var z = 2;", "var z = 3;");
+
+        IncrementalCompiler.Compilation c = compile(edited);
+        assertUnits(2, 1, c);
+        assertEquals(full(edited), c.getCode());
+    }
+
+    @Test
+    public void editBackRestoresTheFirstCode()
+    {
+        String first = compile(MODULE).getCode();
+        compile(MODULE.replace("g(1)", "g(2.5)"));
+        assertEquals(first, compile(MODULE).getCode());
+    }
+
+    @Test
+    public void moduleWithAnErrorDoesNotBreakTheNextEdit()
+    {
+        compile(MODULE);
+        BatchCompiler.Result result = new BatchCompiler.Result(null);
+        assertNull(compiler.compile(MODULE.replace("var z = 2;", "var z = w;"), false, result));
+        assertNotNull(result.getErrorMessage());
+
+        String edited = MODULE.replace("g(1)", "g(2.5)");
+        assertEquals(full(edited), compile(edited).getCode());
+    }
+
+    @Test
+    public void clearCompilesEverythingAgain()
+    {
+        compile(MODULE);
+        compiler.clear();
+        assertUnits(0, 3, compile(MODULE));
+    }
+}
@@ -0,0 +1,57 @@
+package cli;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import semantic.Exceptions;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * SeleniumFrontend against the local stand-in page (see DriverPoolTest).
+ */
+public class SeleniumFrontendTest
+{
+    private static DriverPool pool;
+    private static SeleniumFrontend frontend;
+
+    @BeforeClass
+    public static void setUp() throws Exception
+    {
+        pool = new DriverPool(DriverPoolTest.STAND_IN, 1, 50, SeleniumFrontend.driverFactory("htmlunit"));
+        pool.warmUp();
+        frontend = new SeleniumFrontend(pool, 10000);
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    public void parseReturnsTheJsonOfThePage() throws Exception
+    {
+        String json = frontend.parse("function main(){ var a = [1, 2]; }");
+        assertTrue(json.contains("\"type\": \"Program\""));
+        assertTrue(frontend.getLastLatency() >= 0);
+    }
+
+    @Test(expected = Exceptions.SyntaxException.class)
+    public void errorOfThePageIsASyntaxException() throws Exception {
+        frontend.parse("function main(){ var a = (1;");
+    }
+
+    @Test
+    public void sessionSurvivesASyntaxError() throws Exception
+    {
+        try {
+            frontend.parse("function main({");
+        }
+        catch (Exceptions.SyntaxException e) {
+            //expected
+        }
+        frontend.parse("function main(){}");
+        assertEquals(1, pool.getIdle());
+    }
+}
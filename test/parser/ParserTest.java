@@ -0,0 +1,80 @@
+package parser;
+
+import cli.RhinoFrontend;
+import org.junit.Test;
+import semantic.Diagnostic;
+import semantic.Diagnostics;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Errors found by the Parser : every one of the module is reported, with the function and the path it is at.
+ */
+public class ParserTest
+{
+    private static Parser parse(String js) throws Exception
+    {
+        Parser p = new Parser(new RhinoFrontend().parse(js));
+        p.run();
+        return p;
+    }
+
+    @Test
+    public void everyUndefinedSymbolIsReported() throws Exception
+    {
+        Diagnostics d = parse("function f(){\n    var a = u;\n    var b = a + v;\n    return w;\n}\n" +
+                              "function main(){\n    while(x > 1){ y = 2; }\n}\n").getDiagnostics();
+
+        assertEquals(5, d.getCount());
+        List<Diagnostic> all = d.getAll();
+        String[] symbols = { "u", "v", "w", "x", "y" };
+        for(int i = 0; i < symbols.length; i++)
+        {
+            assertEquals(Diagnostic.Kind.UNDEFINED_SYMBOL, all.get(i).getKind());
+            assertEquals(symbols[i], all.get(i).getSymbol());
+            assertEquals(i < 3 ? "f" : "main", all.get(i).getFunction());
+        }
+        assertEquals("function f > variabledeclaration > operation > identifier", all.get(1).getPath());
+        assertEquals("function main > whilestatement > assignment > identifier", all.get(4).getPath());
+        assertEquals("Cannot find symbol \"u\"", d.getFirst().getMessage());
+    }
+
+    @Test
+    public void declarationBeforeTheFirstFunctionIsReported() throws Exception
+    {
+        Diagnostics d = parse("var top = 1;\nfunction main(){\n    var r = top;\n}\n").getDiagnostics();
+
+        Diagnostic first = d.getFirst();
+        assertEquals(Diagnostic.Kind.OUTSIDE_FUNCTION, first.getKind());
+        assertEquals("top", first.getSymbol());
+        assertNull(first.getFunction());
+        assertEquals("Variable \"top\" is declared outside of a function", first.getMessage());
+    }
+
+    @Test
+    public void validModuleHasNoDiagnostics() throws Exception {
+        assertEquals(0, parse("function main(){\n    var r = 1;\n    return r;\n}\n").getDiagnostics().getCount());
+    }
+
+    @Test
+    public void literalWithTheTextOfAKeywordIsNotOne() throws Exception
+    {
+        Parser p = parse("function main(){\n    var s = \"store\";\n    var l = \"load\";\n    return l;\n}\n");
+        assertEquals(0, p.getDiagnostics().getCount());
+
+        Node function = p.getHir().getAdj().get(0);
+        for(int i = 0; i < 2; i++)
+        {
+            Node declaration = function.getAdj().get(i);
+            assertSame(Keyword.STORE, declaration.getKeyword());
+            assertNull(declaration.getAdj().get(0).getKeyword());
+        }
+        assertEquals("store", function.getAdj().get(0).getAdj().get(0).getSpecification());
+        assertSame(Keyword.LOAD, function.getAdj().get(2).getAdj().get(0).getKeyword());
+        assertNull(CompactHir.of(p.getHir()).getRoot().getAdj().get(0).getAdj().get(1).getAdj().get(0).getKeyword());
+    }
+}
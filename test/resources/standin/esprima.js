@@ -0,0 +1,17 @@
+// Stand-in for the esprima bundle of the demo page, so the Selenium frontend can be tested without the network.
+// It only checks that brackets balance and answers an empty Program, in the format esprima.parse gives.
+var esprima = {
+    parse: function (code) {
+        var open = [], pairs = { ')': '(', ']': '[', '}': '{' };
+        for (var i = 0; i < code.length; i++) {
+            var c = code.charAt(i);
+            if (c === '(' || c === '[' || c === '{')
+                open.push(c);
+            else if (pairs[c] !== undefined && open.pop() !== pairs[c])
+                throw new Error('Line 1: Unexpected token ' + c);
+        }
+        if (open.length > 0)
+            throw new Error('Line 1: Unexpected end of input');
+        return { type: 'Program', body: [], sourceType: 'script' };
+    }
+};
@@ -0,0 +1,64 @@
+package semantic;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Diagnostics : order, count and the cap of MAX_REPORTED errors.
+ */
+public class DiagnosticsTest
+{
+    private static void report(Diagnostics d, int n)
+    {
+        for(int i = 0; i < n; i++)
+            d.report(Diagnostic.Kind.UNDEFINED_SYMBOL, "v" + i, "f", null, "Cannot find symbol \"v" + i + "\"");
+    }
+
+    @Test
+    public void pastMaxReportedErrorsAreOnlyCounted()
+    {
+        Diagnostics d = new Diagnostics();
+        report(d, Diagnostics.MAX_REPORTED + 5);
+
+        assertTrue(d.isFull());
+        assertEquals(Diagnostics.MAX_REPORTED + 5, d.getCount());
+        assertEquals(Diagnostics.MAX_REPORTED, d.getAll().size());
+        assertTrue(d.format().endsWith("... and 5 more\n"));
+    }
+
+    @Test
+    public void addAllKeepsTheOrderAndTheCount()
+    {
+        Diagnostics d = new Diagnostics(), other = new Diagnostics();
+        report(d, 2);
+        report(other, Diagnostics.MAX_REPORTED + 1);
+        d.addAll(other);
+
+        assertEquals(Diagnostics.MAX_REPORTED + 3, d.getCount());
+        assertEquals(Diagnostics.MAX_REPORTED, d.getAll().size());
+        assertEquals("v0", d.getFirst().getSymbol());
+        assertEquals("v0", d.getAll().get(2).getSymbol());
+    }
+
+    @Test
+    public void emptyDiagnostics()
+    {
+        Diagnostics d = new Diagnostics();
+        assertTrue(d.isEmpty());
+        assertFalse(d.isFull());
+        assertNull(d.getFirst());
+        assertEquals("", d.format());
+    }
+
+    @Test
+    public void diagnosticNamesItsFunctionAndPath()
+    {
+        assertEquals("Invalid operation (in f, at function f > return)",
+                     new Diagnostic(Diagnostic.Kind.INVALID_OPERATION, null, "f", "function f > return", "Invalid operation").toString());
+        assertEquals("Invalid operation", new Diagnostic(Diagnostic.Kind.INVALID_OPERATION, null, null, null, "Invalid operation").toString());
+    }
+}
@@ -0,0 +1,153 @@
+package semantic;
+
+import cli.RhinoFrontend;
+import org.junit.Test;
+import parser.Parser;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Errors found by the TypeInference : every function is checked after an error, each error names the real
+ * variable, and the parallel run reports the same diagnostics as the sequential one.
+ */
+public class TypeInferenceTest
+{
+    /**
+     * Type mismatch, invalid operation and wrong number of args.
+     */
+    final private static String TYPE_ERRORS =
+            "    var a = 1;\n    a = \"s\";\n    var b = true;\n    var c = b - 1;\n    a = F(2);\n    return a;\n";
+
+    private static Parser parse(String js) throws Exception
+    {
+        Parser p = new Parser(new RhinoFrontend().parse(js));
+        p.run();
+        return p;
+    }
+
+    private static TypeInference infer(String js, ForkJoinPool pool) throws Exception
+    {
+        Parser p = parse(js);
+        assertEquals(0, p.getDiagnostics().getCount());
+        return infer(p, pool);
+    }
+
+    private static TypeInference infer(Parser p, ForkJoinPool pool)
+    {
+        TypeInference ti = new TypeInference(p.getTables(), p.getHir());
+        if(pool == null)
+            ti.run();
+        else
+            ti.run(pool);
+        return ti;
+    }
+
+    private static String typeErrors(int functions)
+    {
+        StringBuilder js = new StringBuilder();
+        for(int f = 0; f < functions; f++)
+            js.append("function f").append(f).append("(){\n").append(TYPE_ERRORS.replace("F(", "f" + f + "(")).append("}\n");
+        return js.append("function main(){\n    var r = 1;\n}\n").toString();
+    }
+
+    @Test
+    public void everyErrorOfEveryFunctionIsReported() throws Exception
+    {
+        TypeInference ti = infer("function f(){\n" + TYPE_ERRORS.replace("F(", "f(") + "}\n" +
+                                 "function main(){\n    var q;\n    var k = q + 1;\n}\n", null);
+
+        List<Diagnostic> all = ti.getDiagnostics().getAll();
+        assertEquals(4, all.size());
+        assertEquals(Diagnostic.Kind.TYPE_MISMATCH, all.get(0).getKind());
+        assertEquals("a", all.get(0).getSymbol());
+        assertEquals(Diagnostic.Kind.INVALID_OPERATION, all.get(1).getKind());
+        assertEquals(Diagnostic.Kind.ARG_COUNT, all.get(2).getKind());
+        assertEquals("function f > assignment > callee f", all.get(2).getPath());
+        assertEquals(Diagnostic.Kind.UNINITIALIZED, all.get(3).getKind());
+        assertEquals("q", all.get(3).getSymbol());
+        assertEquals("main", all.get(3).getFunction());
+        assertEquals(all.get(0).getMessage(), ti.getErrorMessage());
+    }
+
+    @Test
+    public void arrayErrorsNameTheArray() throws Exception
+    {
+        for(String init : new String[]{ "var arr = [1, \"s\"];", "var q;\n    var arr = [q, 1];" })
+        {
+            Diagnostic d = infer("function main(){\n    " + init + "\n}\n", null).getDiagnostics().getFirst();
+            assertEquals(Diagnostic.Kind.TYPE_MISMATCH, d.getKind());
+            assertEquals("arr", d.getSymbol());
+            assertFalse(d.getMessage().contains("resolver"));
+        }
+    }
+
+    /**
+     * The Parser reported the undefined names and left their identifiers without descriptor : the inference stops
+     * at the expressions they are in, without reporting them again, and checks the rest.
+     */
+    @Test
+    public void undefinedNamesOfTheParserAreSkipped() throws Exception
+    {
+        String[] bodies = {
+            "var v = undefinedVar + 1;", "var v = 1 + (2 * u);", "var v = u;", "u = 1 + 2;", "return u + 1;",
+            "var r = g(u);", "var r = g(u + 1);", "var a = [[1, 2], [u, 3]];", "var r = u[0] + 1;", "u++;",
+            "while(u > 1){ var x = 1; }", "for(var i = 0; i < u; i++){ var x = 1; }"
+        };
+        for(String body : bodies)
+        {
+            Parser p = parse("function g(a){\n    return a;\n}\nfunction main(){\n    var q = g(2);\n    " + body + "\n}\n");
+            assertEquals(body, 1, p.getDiagnostics().getCount());
+            assertEquals(body, 0, infer(p, null).getDiagnostics().getCount());
+        }
+    }
+
+    @Test
+    public void typeErrorAfterAnUndefinedNameIsReported() throws Exception
+    {
+        Parser p = parse("function main(){\n    var v = undefinedVar + 1;\n    var s = true;\n    var t = s - 1;\n}\n");
+        assertEquals(Diagnostic.Kind.UNDEFINED_SYMBOL, p.getDiagnostics().getFirst().getKind());
+
+        Diagnostics d = infer(p, null).getDiagnostics();
+        assertEquals(1, d.getCount());
+        assertEquals(Diagnostic.Kind.INVALID_OPERATION, d.getFirst().getKind());
+    }
+
+    @Test
+    public void moduleWithoutFunctions() throws Exception
+    {
+        Parser p = parse("var top = 1;\n");
+        assertEquals(Diagnostic.Kind.OUTSIDE_FUNCTION, p.getDiagnostics().getFirst().getKind());
+        assertEquals(0, infer(p, null).getDiagnostics().getCount());
+    }
+
+    @Test
+    public void validModuleHasNoDiagnostics() throws Exception
+    {
+        TypeInference ti = infer("function main(){\n    var arr = [1, 2];\n    var r = arr[0] + 1.5;\n    return r;\n}\n", null);
+        assertEquals(0, ti.getDiagnostics().getCount());
+        assertNull(ti.getErrorMessage());
+    }
+
+    @Test
+    public void parallelRunReportsTheSameDiagnostics() throws Exception
+    {
+        //past the default js2java.inference.parallel.min, and past MAX_REPORTED errors
+        String js = typeErrors(100);
+        Diagnostics sequential = infer(js, null).getDiagnostics();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Diagnostics parallel = infer(js, pool).getDiagnostics();
+            assertEquals(300, sequential.getCount());
+            assertEquals(sequential.getCount(), parallel.getCount());
+            assertEquals(sequential.format(), parallel.format());
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+}